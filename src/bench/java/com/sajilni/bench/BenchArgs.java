@@ -0,0 +1,40 @@
+package com.sajilni.bench;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@code key=value} options for the benchmark harnesses, passed through {@code -Dbench.args}.
+ * Blank arguments are ignored, so an empty {@code bench.args} runs with the defaults.
+ */
+public final class BenchArgs {
+    private final Map<String, String> values = new HashMap<>();
+
+    public BenchArgs(String[] args) {
+        for (String arg : args) {
+            for (String option : arg.trim().split("\\s+")) {
+                int eq = option.indexOf('=');
+                if (eq > 0) {
+                    values.put(option.substring(0, eq), option.substring(eq + 1));
+                } else if (!option.isEmpty()) {
+                    throw new IllegalArgumentException("Expected key=value, got: " + option);
+                }
+            }
+        }
+    }
+
+    public int intValue(String key, int defaultValue) {
+        String value = values.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    public Duration duration(String key, Duration defaultValue) {
+        String value = values.get(key);
+        return value != null ? Duration.parse(value) : defaultValue;
+    }
+
+    public String string(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+}
@@ -0,0 +1,228 @@
+package com.sajilni.service;
+
+import com.sajilni.bench.BenchArgs;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registrations per second through a 10-connection Hikari pool, with the registration
+ * transaction shaped as before and after {@link UserService#createUser} moved slow work out of it.
+ * <ul>
+ *   <li>{@code before}: one transaction around the duplicate check, the BCrypt hash, the insert
+ *       and the synchronous OTP email, so each registration holds a connection through all of it.</li>
+ *   <li>{@code after}: duplicate check on its own, hash with no connection held, then one short
+ *       transaction re-checking and inserting the user; the OTP email is sent after commit.</li>
+ * </ul>
+ * The statements mirror the application's, against a {@code bench_user} table the harness
+ * creates. The SMTP round trip is simulated with {@code mail-latency}.
+ * In-memory H2 is the default; point {@code jdbc-url} at PostgreSQL for absolute numbers.
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbench=com.sajilni.service.RegistrationThroughputBenchmark \
+ *     -Dbench.args="clients=50 duration=PT20S jdbc-url=jdbc:postgresql://localhost:5432/sajilni user=... password=..."
+ * </pre>
+ */
+public final class RegistrationThroughputBenchmark {
+    private static final String PASSWORD = "Registration-Password-1";
+
+    private final HikariDataSource dataSource;
+    private final PasswordEncoder encoder;
+    private final Duration mailLatency;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private RegistrationThroughputBenchmark(HikariDataSource dataSource, PasswordEncoder encoder, Duration mailLatency) {
+        this.dataSource = dataSource;
+        this.encoder = encoder;
+        this.mailLatency = mailLatency;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchArgs options = new BenchArgs(args);
+        int clients = options.intValue("clients", 50);
+        Duration duration = options.duration("duration", Duration.ofSeconds(15));
+        Duration warmup = options.duration("warmup", Duration.ofSeconds(5));
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(options.string("jdbc-url", "jdbc:h2:mem:bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"));
+        config.setUsername(options.string("user", "sa"));
+        config.setPassword(options.string("password", ""));
+        config.setMaximumPoolSize(options.intValue("pool", 10)); // spring.datasource.hikari.maximum-pool-size
+        config.setConnectionTimeout(30_000);
+
+        try (HikariDataSource dataSource = new HikariDataSource(config)) {
+            createTables(dataSource);
+            RegistrationThroughputBenchmark bench = new RegistrationThroughputBenchmark(dataSource,
+                    new BCryptPasswordEncoder(options.intValue("bcrypt-strength", 10)),
+                    options.duration("mail-latency", Duration.ofMillis(50)));
+
+            System.out.printf("pool=%d clients=%d duration=%s%n", config.getMaximumPoolSize(), clients, duration);
+            System.out.printf("%-7s %12s %10s %10s %10s%n", "shape", "regs/s", "p50 ms", "p99 ms", "max ms");
+            for (String shape : List.of("before", "after")) {
+                Task task = shape.equals("before") ? bench::registerBefore : bench::registerAfter;
+                bench.run(task, clients, warmup);
+                Result result = bench.run(task, clients, duration);
+                System.out.printf(Locale.ROOT, "%-7s %12.1f %10.1f %10.1f %10.1f%n", shape,
+                        result.count() / (duration.toNanos() / 1e9),
+                        result.percentileMillis(0.50), result.percentileMillis(0.99), result.percentileMillis(1.0));
+            }
+        }
+    }
+
+    /** Before: everything in one transaction, including the mail send. */
+    private void registerBefore() throws Exception {
+        String email = nextEmail();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                if (exists(connection, email)) {
+                    throw new IllegalStateException("user.exists");
+                }
+                insertUser(connection, email, encoder.encode(PASSWORD));
+                Thread.sleep(mailLatency.toMillis()); // OTP email sent inline
+                connection.commit();
+            } catch (Exception ex) {
+                connection.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    /** After: check, hash outside any transaction, a short insert transaction, then the mail. */
+    private void registerAfter() throws Exception {
+        String email = nextEmail();
+        try (Connection connection = dataSource.getConnection()) {
+            if (exists(connection, email)) {
+                throw new IllegalStateException("user.exists");
+            }
+        }
+        String passwordHash = encoder.encode(PASSWORD);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                if (exists(connection, email)) {
+                    throw new IllegalStateException("user.exists");
+                }
+                insertUser(connection, email, passwordHash);
+                connection.commit();
+            } catch (Exception ex) {
+                connection.rollback();
+                throw ex;
+            }
+        }
+        Thread.sleep(mailLatency.toMillis()); // OTP email, no connection held
+    }
+
+    private Result run(Task task, int clients, Duration duration) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            long deadline = System.nanoTime() + duration.toNanos();
+            List<Future<long[]>> futures = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                futures.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int n = 0;
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        task.register();
+                        long end = System.nanoTime();
+                        if (end > deadline) {
+                            break; // finished after the window closed; not counted
+                        }
+                        if (n == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, n * 2);
+                        }
+                        latencies[n++] = end - start;
+                    }
+                    return Arrays.copyOf(latencies, n);
+                }));
+            }
+            List<long[]> perClient = new ArrayList<>(clients);
+            for (Future<long[]> future : futures) {
+                perClient.add(future.get());
+            }
+            return Result.of(perClient);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String nextEmail() {
+        return "bench" + sequence.incrementAndGet() + "@example.com";
+    }
+
+    private static boolean exists(Connection connection, String email) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT 1 FROM bench_user WHERE email = ?")) {
+            ps.setString(1, email);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static void insertUser(Connection connection, String email, String passwordHash) throws SQLException {
+        Timestamp now = Timestamp.from(Instant.now());
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO bench_user (first_name, last_name, email, password_hash, enabled, created_at, updated_at) " +
+                        "VALUES (?, ?, ?, ?, false, ?, ?)")) {
+            ps.setString(1, "Bench");
+            ps.setString(2, "User");
+            ps.setString(3, email);
+            ps.setString(4, passwordHash);
+            ps.setTimestamp(5, now);
+            ps.setTimestamp(6, now);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void createTables(HikariDataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS bench_user");
+            st.execute("CREATE TABLE bench_user (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                    "first_name VARCHAR(255), last_name VARCHAR(255), email VARCHAR(255) NOT NULL UNIQUE, " +
+                    "password_hash VARCHAR(255) NOT NULL, enabled BOOLEAN NOT NULL, " +
+                    "created_at TIMESTAMP, updated_at TIMESTAMP)");
+        }
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void register() throws Exception;
+    }
+
+    private record Result(long[] sortedNanos) {
+        static Result of(List<long[]> perClient) {
+            long[] all = perClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+            return new Result(all);
+        }
+
+        long count() {
+            return sortedNanos.length;
+        }
+
+        double percentileMillis(double p) {
+            if (sortedNanos.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(p * sortedNanos.length) - 1);
+            return sortedNanos[Math.max(0, index)] / 1e6;
+        }
+    }
+}
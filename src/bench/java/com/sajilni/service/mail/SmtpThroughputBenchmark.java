@@ -0,0 +1,140 @@
+package com.sajilni.service.mail;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import com.sajilni.bench.BenchArgs;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Messages per second through {@link SmtpTransportPool} against a local GreenMail SMTP server
+ * with AUTH, in three modes:
+ * <ul>
+ *   <li>{@code unpooled}: {@code app.mail.pool.enabled=false}, so every message opens, authenticates
+ *       and closes its own connection through {@link JavaMailSenderImpl}.</li>
+ *   <li>{@code pooled}: {@code app.mail.pool.enabled=true}, one pooled connection per send.</li>
+ *   <li>{@code batched}: pooled, with each worker pushing {@code batch-size} messages through
+ *       {@link SmtpTransportPool#inBatch} as the {@link MailDispatcher} does.</li>
+ * </ul>
+ * {@code workers} sender threads share the messages, matching {@code app.mail.dispatch.workers}.
+ * Each run gets a fresh pool in its own context; closing the context closes the pooled connections.
+ * Loopback hides network round trips and TLS, so the pooled gain against a real relay is larger.
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbench=com.sajilni.service.mail.SmtpThroughputBenchmark \
+ *     -Dbench.args="messages=5000 workers=4"
+ * </pre>
+ */
+public final class SmtpThroughputBenchmark {
+    private static final String USER = "bench";
+    private static final String PASSWORD = "bench-password";
+
+    public static void main(String[] args) throws Exception {
+        BenchArgs options = new BenchArgs(args);
+        int messages = options.intValue("messages", 2_000);
+        int workers = options.intValue("workers", 4);
+        int batchSize = options.intValue("batch-size", 20);
+        int rounds = options.intValue("rounds", 3);
+
+        GreenMail greenMail = new GreenMail(new ServerSetup(options.intValue("port", 3025), "127.0.0.1", "smtp"));
+        greenMail.setUser(USER + "@localhost", USER, PASSWORD);
+        greenMail.start();
+        try {
+            JavaMailSenderImpl sender = mailSender(greenMail.getSmtp().getPort());
+            System.out.printf("messages=%d workers=%d batch-size=%d%n", messages, workers, batchSize);
+            System.out.printf("%-9s %12s %10s%n", "mode", "msgs/s", "connects");
+            for (int round = 1; round <= rounds; round++) {
+                String note = round == 1 ? "   (warm-up)" : "";
+                run("unpooled", greenMail, sender, false, messages, workers, 1, note);
+                run("pooled", greenMail, sender, true, messages, workers, 1, note);
+                run("batched", greenMail, sender, true, messages, workers, batchSize, note);
+            }
+        } finally {
+            greenMail.stop();
+        }
+    }
+
+    private static void run(String mode, GreenMail greenMail, JavaMailSenderImpl sender, boolean enabled,
+                            int messages, int workers, int batchSize, String note) throws Exception {
+        greenMail.purgeEmailFromAllMailboxes();
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(SmtpTransportPool.class, () -> new SmtpTransportPool(sender, meters, enabled,
+                    workers, 100, Duration.ofSeconds(30), Duration.ofSeconds(5), Duration.ofSeconds(10)));
+            context.refresh();
+            SmtpTransportPool smtp = context.getBean(SmtpTransportPool.class);
+
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                int share = messages / workers + (w < messages % workers ? 1 : 0);
+                futures.add(executor.submit(() -> {
+                    for (int sent = 0; sent < share; ) {
+                        int batch = Math.min(batchSize, share - sent);
+                        smtp.inBatch(() -> {
+                            for (int i = 0; i < batch; i++) {
+                                smtp.send(message(sender));
+                            }
+                        });
+                        sent += batch;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            double seconds = Duration.ofNanos(System.nanoTime() - start).toNanos() / 1e9;
+
+            int received = greenMail.getReceivedMessages().length;
+            if (received != messages) {
+                throw new IllegalStateException(mode + ": sent " + messages + ", server received " + received);
+            }
+            // Unpooled sends bypass the pool, so they open one connection each
+            long connects = enabled ? (long) meters.get("mail.smtp.connects").counter().count() : messages;
+            System.out.printf(Locale.ROOT, "%-9s %12.1f %10d%s%n", mode, messages / seconds, connects, note);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static JavaMailSenderImpl mailSender(int port) {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("127.0.0.1");
+        sender.setPort(port);
+        sender.setUsername(USER);
+        sender.setPassword(PASSWORD);
+        Properties properties = sender.getJavaMailProperties();
+        properties.put("mail.smtp.auth", "true");
+        properties.put("mail.smtp.connectiontimeout", "5000");
+        properties.put("mail.smtp.timeout", "5000");
+        return sender;
+    }
+
+    private static MimeMessage message(JavaMailSenderImpl sender) {
+        try {
+            MimeMessage message = sender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+            helper.setFrom("no-reply@sajilni.com");
+            helper.setTo(USER + "@localhost");
+            helper.setSubject("Your verification code");
+            helper.setText("Your code is 123456", "<p>Your code is <b>123456</b></p>");
+            return message;
+        } catch (MessagingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
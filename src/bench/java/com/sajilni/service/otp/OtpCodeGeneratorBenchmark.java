@@ -0,0 +1,87 @@
+package com.sajilni.service.otp;
+
+import com.sajilni.domain.constants.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OtpCodeGenerator} against the generator it replaced, which built a new
+ * {@link SecureRandom} for every code and drew one {@code nextInt} per symbol.
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbench.args="OtpCodeGeneratorBenchmark -t 4"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OtpCodeGeneratorBenchmark {
+
+    @Param({"6"})
+    public int length;
+
+    @Param({"NUMERIC", "ALPHANUMERIC"})
+    public Type type;
+
+    private AnnotationConfigApplicationContext context;
+    private OtpCodeGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // A context so the generator's refill thread is stopped through its @PreDestroy
+        context = new AnnotationConfigApplicationContext(OtpCodeGenerator.class);
+        generator = context.getBean(OtpCodeGenerator.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String buffered() {
+        return generator.generate(length, type);
+    }
+
+    @Benchmark
+    public String secureRandomPerCode() {
+        return legacyRandomToken(length, type);
+    }
+
+    /** The pre-{@link OtpCodeGenerator} implementation from {@code OtpService.randomToken}. */
+    private static String legacyRandomToken(int len, Type t) {
+        final String digits = "0123456789";
+        final String alpha = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+        final String alphanum = alpha + digits;
+
+        String chars = switch (t) {
+            case NUMERIC -> digits;
+            case ALPHA -> alpha;
+            case ALPHANUMERIC -> alphanum;
+        };
+
+        SecureRandom rnd = new SecureRandom();
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            sb.append(chars.charAt(rnd.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package com.sajilni.service.otp;
+
+import com.sajilni.bench.BenchArgs;
+import com.sajilni.service.expiry.ExpiryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Retained heap per pending challenge and per generation counter for {@link InMemoryOtpStore}
+ * (map of objects) and {@link CompactOtpStore} (packed {@code long}s).
+ * <p>
+ * Each store runs in its own small context with its own {@link ExpiryService}, so the wheel
+ * timer each in-memory entry schedules is counted too; the last row reports that share on its
+ * own. The compact store schedules no per-entry timers.
+ * Closing the context stops the wheel, so nothing of one run survives into the next. Emails
+ * are built inside the fill loop and not kept by the harness, so a key counts only if the
+ * store retains it. Heap is read after repeated full GCs; run with a fixed heap (the profile
+ * uses {@code -Xms2g -Xmx2g}) and nothing else in the JVM.
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbench=com.sajilni.service.otp.OtpStoreFootprintBenchmark \
+ *     -Dbench.args="entries=500000"
+ * </pre>
+ */
+public final class OtpStoreFootprintBenchmark {
+    private static final Duration TTL = Duration.ofMinutes(30);
+    private static final DataSize BUDGET = DataSize.ofGigabytes(1); // large enough that nothing is evicted
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) {
+        BenchArgs options = new BenchArgs(args);
+        int entries = options.intValue("entries", 500_000);
+        int rounds = options.intValue("rounds", 3);
+
+        System.out.printf("%-8s %12s %14s %14s%n", "store", "entries", "B/challenge", "B/generation");
+        for (int round = 1; round <= rounds; round++) {
+            // The first round doubles as warm-up (class loading, JIT, code cache)
+            report(round, "memory", entries, expiry -> new InMemoryOtpStore(expiry, new SimpleMeterRegistry(), BUDGET));
+            report(round, "compact", entries, expiry -> new CompactOtpStore(expiry, new SimpleMeterRegistry(), BUDGET));
+        }
+        reportTimers(entries);
+    }
+
+    private static void report(int round, String name, int entries, Function<ExpiryService, OtpStore> factory) {
+        try (AnnotationConfigApplicationContext context = context()) {
+            context.registerBean(OtpStore.class, () -> factory.apply(context.getBean(ExpiryService.class)));
+            context.refresh();
+            OtpStore store = context.getBean(OtpStore.class);
+
+            long empty = usedHeap();
+            for (int i = 0; i < entries; i++) {
+                store.saveChallenge(email(i), "123456", 5, TTL);
+            }
+            long withChallenges = usedHeap();
+            for (int i = 0; i < entries; i++) {
+                store.tryRecordGeneration(email(i), 3, TTL);
+            }
+            long withGenerations = usedHeap();
+
+            if (store.size() != entries || store.generationAttemptsSize() != entries) {
+                throw new IllegalStateException(name + " store evicted entries: " + store.size()
+                        + " challenges, " + store.generationAttemptsSize() + " generations");
+            }
+            System.out.printf(Locale.ROOT, "%-8s %12d %14.1f %14.1f%s%n", name, entries,
+                    (double) (withChallenges - empty) / entries,
+                    (double) (withGenerations - withChallenges) / entries,
+                    round == 1 ? "   (warm-up)" : "");
+        }
+    }
+
+    /** The wheel timer share of the memory store's figures, which schedule one per entry. */
+    private static void reportTimers(int entries) {
+        try (AnnotationConfigApplicationContext context = context()) {
+            context.refresh();
+            ExpiryService expiry = context.getBean(ExpiryService.class);
+
+            long empty = usedHeap();
+            for (int i = 0; i < entries; i++) {
+                long key = i; // the memory store's callbacks capture its existing key, so a long stands in
+                expiry.schedule(TTL, () -> Long.hashCode(key));
+            }
+            long withTimers = usedHeap();
+            System.out.printf(Locale.ROOT, "%-8s %12d %14.1f   (per timer, included in the memory rows)%n",
+                    "timers", entries, (double) (withTimers - empty) / entries);
+        }
+    }
+
+    /** A context holding just an expiry wheel; closing it runs the wheel's {@code @PreDestroy}. */
+    private static AnnotationConfigApplicationContext context() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(ExpiryService.class, () -> new ExpiryService(new SimpleMeterRegistry(), Duration.ofSeconds(1)));
+        return context;
+    }
+
+    private static String email(int i) {
+        return "user" + i + "@example.com";
+    }
+
+    /**
+     * Lowest used heap over several full GCs. Pauses let threads of the previous run (the
+     * stopped wheel, cache maintenance) finish, so their garbage is not counted as baseline.
+     */
+    private static long usedHeap() {
+        long lowest = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            lowest = Math.min(lowest, MEMORY.getHeapMemoryUsage().getUsed());
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return lowest;
+    }
+}
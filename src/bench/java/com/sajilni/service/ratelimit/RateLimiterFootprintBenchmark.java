@@ -0,0 +1,74 @@
+package com.sajilni.service.ratelimit;
+
+import com.sajilni.bench.BenchArgs;
+import com.sajilni.service.expiry.ExpiryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Retained heap per tracked key for {@link GcraRateLimiter}: the Caffeine node, the email key,
+ * the packed state holder and its {@link ExpiryService} timer. This is the figure behind
+ * {@code RateLimitService.ESTIMATED_ENTRY_BYTES}.
+ * <p>
+ * Also checks that evicted keys do not leave timers behind: the second row fills a limiter
+ * capped at a tenth of the keys and reports the wheel backlog once it has ticked. Run with a
+ * fixed heap (the profile uses {@code -Xms2g -Xmx2g}) and nothing else in the JVM.
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbench=com.sajilni.service.ratelimit.RateLimiterFootprintBenchmark \
+ *     -Dbench.args="keys=500000"
+ * </pre>
+ */
+public final class RateLimiterFootprintBenchmark {
+    private static final RateLimitPolicy POLICY = new RateLimitPolicy("login", 5, Duration.ofMinutes(15), Duration.ofMinutes(30));
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) throws InterruptedException {
+        BenchArgs options = new BenchArgs(args);
+        int keys = options.intValue("keys", 500_000);
+        int rounds = options.intValue("rounds", 3);
+
+        System.out.printf("%-8s %12s %12s %14s%n", "cap", "keys", "B/key", "wheel backlog");
+        for (int round = 1; round <= rounds; round++) {
+            // The first round doubles as warm-up (class loading, JIT, code cache)
+            report(round, keys, keys);
+        }
+        report(rounds + 1, keys, keys / 10);
+    }
+
+    private static void report(int round, int keys, int cap) throws InterruptedException {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(ExpiryService.class, () -> new ExpiryService(new SimpleMeterRegistry(), Duration.ofMillis(100)));
+            context.refresh();
+            ExpiryService expiry = context.getBean(ExpiryService.class);
+            GcraRateLimiter limiter = new GcraRateLimiter(POLICY, expiry, cap, Counter.builder("evicted")
+                    .register(new SimpleMeterRegistry()));
+
+            long empty = usedHeap();
+            for (int i = 0; i < keys; i++) {
+                limiter.record("user" + i + "@example.com");
+            }
+            long filled = usedHeap(); // also lets the wheel tick and unlink cancelled timers
+
+            System.out.printf(Locale.ROOT, "%-8d %12d %12.1f %14d%s%n", cap, limiter.size(),
+                    (double) (filled - empty) / limiter.size(), expiry.getBacklog(),
+                    round == 1 ? "   (warm-up)" : "");
+        }
+    }
+
+    /** Lowest used heap over several full GCs, with pauses for the wheel and cache maintenance. */
+    private static long usedHeap() throws InterruptedException {
+        long lowest = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            lowest = Math.min(lowest, MEMORY.getHeapMemoryUsage().getUsed());
+            Thread.sleep(200);
+        }
+        return lowest;
+    }
+}
@@ -0,0 +1,37 @@
+package com.sajilni.cache;
+
+import com.sajilni.entity.UserEntity;
+
+/**
+ * Immutable auth projection of {@link UserEntity}: what login, token minting and
+ * OTP flows need. {@code passwordHash} is {@code null} on copies that came from the
+ * shared cache tier, which never stores credentials; see {@link UserAuthCache#getWithCredentials}.
+ */
+public record CachedUser(
+        Long id,
+        String email,
+        String passwordHash,
+        String firstName,
+        String lastName,
+        boolean enabled
+) {
+    public static CachedUser from(UserEntity user) {
+        return new CachedUser(
+                user.getId(),
+                user.getEmail(),
+                user.getPasswordHash(),
+                user.getFirstName(),
+                user.getLastName(),
+                user.isEnabled()
+        );
+    }
+
+    /** Copy safe to put in the shared tier. */
+    public CachedUser withoutCredentials() {
+        return new CachedUser(id, email, null, firstName, lastName, enabled);
+    }
+
+    public CachedUser withPasswordHash(String hash) {
+        return new CachedUser(id, email, hash, firstName, lastName, enabled);
+    }
+}
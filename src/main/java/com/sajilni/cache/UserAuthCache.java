@@ -0,0 +1,235 @@
+package com.sajilni.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sajilni.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Two-tier cache of {@link CachedUser} keyed by lower-cased email.
+ * <p>
+ * L1 is an in-process Caffeine cache; L2 is Redis, shared by every node. Misses are loaded
+ * through Caffeine's per-key computation (L2, then the database), so concurrent misses on the
+ * same email share a single lookup. Unknown emails are not cached.
+ * <p>
+ * L2 never holds credentials: entries are written {@link CachedUser#withoutCredentials()},
+ * and {@link #getWithCredentials} fetches the hash from the database when a password has to
+ * be checked against an entry that came from Redis.
+ * <p>
+ * When a user row changes, the owning node bumps the entry's generation counter and deletes
+ * the L2 entry after commit, then publishes the email on {@code app.cache.user.redis.channel};
+ * every node drops its L1 copy on receipt. A loader only writes L2 if the generation it read
+ * before going to the database is still current, so a load that raced the commit cannot put
+ * the pre-commit row back for the whole L2 TTL. Redis failures degrade to L1 + database and
+ * never fail the caller.
+ */
+@Slf4j
+@Component
+public class UserAuthCache {
+    // Hash tags keep an entry and its generation in one cluster slot for the scripts below
+    private static final String KEY_PREFIX = "user:auth:{";
+    private static final String GENERATION_PREFIX = "user:auth-gen:{";
+    private static final String KEY_SUFFIX = "}";
+    private static final char SEPARATOR = '|';
+
+    // Write the entry only if nobody invalidated it since the loader read the generation
+    private static final RedisScript<Long> WRITE_SCRIPT = RedisScript.of("""
+            if (redis.call('GET', KEYS[2]) or '0') ~= ARGV[1] then
+                return 0
+            end
+            redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+            return 1
+            """, Long.class);
+
+    private static final RedisScript<Long> INVALIDATE_SCRIPT = RedisScript.of("""
+            redis.call('INCR', KEYS[2])
+            redis.call('PEXPIRE', KEYS[2], ARGV[1])
+            redis.call('DEL', KEYS[1])
+            return 1
+            """, Long.class);
+
+    private final UserRepository users;
+    private final StringRedisTemplate redis;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, CachedUser> cache;
+    private final boolean redisEnabled;
+    private final Duration redisTtl;
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public UserAuthCache(UserRepository users,
+                         StringRedisTemplate redis,
+                         RedisMessageListenerContainer listenerContainer,
+                         ObjectMapper objectMapper,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.cache.user.maximum-size:10000}") long maximumSize,
+                         @Value("${app.cache.user.ttl:5m}") Duration ttl,
+                         @Value("${app.cache.user.redis.enabled:true}") boolean redisEnabled,
+                         @Value("${app.cache.user.redis.ttl:30m}") Duration redisTtl,
+                         @Value("${app.cache.user.redis.channel:user-cache:invalidate}") String channel) {
+        this.users = users;
+        this.redis = redis;
+        this.objectMapper = objectMapper;
+        this.redisEnabled = redisEnabled;
+        this.redisTtl = redisTtl;
+        this.channel = channel;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users.auth");
+
+        if (redisEnabled) {
+            listenerContainer.addMessageListener(this::onInvalidation, new ChannelTopic(channel));
+        }
+    }
+
+    public Optional<CachedUser> get(String email) {
+        String key = email.toLowerCase();
+        return Optional.ofNullable(cache.get(key, this::load));
+    }
+
+    /**
+     * Like {@link #get}, but guarantees {@link CachedUser#passwordHash()} is populated, reading
+     * it from the database if the entry came from L2. Use only where a password is checked.
+     */
+    public Optional<CachedUser> getWithCredentials(String email) {
+        String key = email.toLowerCase();
+        CachedUser user = cache.get(key, this::load);
+        if (user == null || user.passwordHash() != null) {
+            return Optional.ofNullable(user);
+        }
+        Optional<CachedUser> complete = users.findPasswordHashById(user.id()).map(user::withPasswordHash);
+        // Only replaces the exact entry we read, so an invalidation in between is not undone
+        complete.ifPresent(c -> cache.asMap().replace(key, user, c));
+        return complete;
+    }
+
+    /**
+     * Drop the local entry now, then once the surrounding transaction commits drop it
+     * again, delete the shared copy and tell the other nodes. Doing the shared part after
+     * commit keeps readers from re-populating either tier with the pre-commit row.
+     */
+    public void invalidate(String email) {
+        String key = email.toLowerCase();
+        cache.invalidate(key);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateEverywhere(key);
+                }
+            });
+        } else {
+            invalidateEverywhere(key);
+        }
+    }
+
+    private void invalidateEverywhere(String key) {
+        cache.invalidate(key);
+        if (!redisEnabled) {
+            return;
+        }
+        try {
+            redis.execute(INVALIDATE_SCRIPT, List.of(entryKey(key), generationKey(key)),
+                    String.valueOf(redisTtl.toMillis()));
+            redis.convertAndSend(channel, nodeId + SEPARATOR + key);
+        } catch (Exception ex) {
+            log.warn("Failed to broadcast user cache invalidation for {}: {}", key, ex.getMessage());
+        }
+    }
+
+    private void onInvalidation(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        int sep = payload.indexOf(SEPARATOR);
+        if (sep < 0 || (sep == nodeId.length() && payload.startsWith(nodeId))) {
+            return; // malformed, or our own broadcast (already applied locally)
+        }
+        String key = payload.substring(sep + 1);
+        cache.invalidate(key);
+        log.debug("User cache entry {} invalidated by peer", key);
+    }
+
+    private CachedUser load(String email) {
+        List<String> shared = readShared(email);
+        CachedUser cached = shared != null ? parse(email, shared.get(0)) : null;
+        if (cached != null) {
+            return cached;
+        }
+
+        log.debug("User cache miss for {}", email);
+        CachedUser loaded = users.findByEmail(email).map(CachedUser::from).orElse(null);
+        if (loaded != null && shared != null) {
+            writeShared(email, loaded, shared.get(1));
+        }
+        return loaded;
+    }
+
+    /** Entry JSON and generation in one round trip, or {@code null} if L2 is unavailable. */
+    private List<String> readShared(String email) {
+        if (!redisEnabled) {
+            return null;
+        }
+        try {
+            List<String> values = redis.opsForValue().multiGet(List.of(entryKey(email), generationKey(email)));
+            if (values == null || values.size() < 2) {
+                return null;
+            }
+            return Arrays.asList(values.get(0), values.get(1) != null ? values.get(1) : "0");
+        } catch (Exception ex) {
+            log.warn("L2 user cache read failed for {}: {}", email, ex.getMessage());
+            return null;
+        }
+    }
+
+    private CachedUser parse(String email, String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, CachedUser.class);
+        } catch (Exception ex) {
+            log.warn("L2 user cache entry for {} is unreadable: {}", email, ex.getMessage());
+            return null;
+        }
+    }
+
+    private void writeShared(String email, CachedUser user, String generation) {
+        try {
+            redis.execute(WRITE_SCRIPT, List.of(entryKey(email), generationKey(email)), generation,
+                    objectMapper.writeValueAsString(user.withoutCredentials()),
+                    String.valueOf(redisTtl.toMillis()));
+        } catch (Exception ex) {
+            log.warn("L2 user cache write failed for {}: {}", email, ex.getMessage());
+        }
+    }
+
+    private static String entryKey(String email) {
+        return KEY_PREFIX + email + KEY_SUFFIX;
+    }
+
+    private static String generationKey(String email) {
+        return GENERATION_PREFIX + email + KEY_SUFFIX;
+    }
+}
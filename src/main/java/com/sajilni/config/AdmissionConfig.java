@@ -0,0 +1,25 @@
+package com.sajilni.config;
+
+import com.sajilni.service.ratelimit.IpBlocklist;
+import com.sajilni.web.AdmissionControlFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AdmissionConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.security.rate-limit.admission.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(RateLimitConfig rateLimitConfig,
+                                                                                  IpBlocklist blocklist) {
+        FilterRegistrationBean<AdmissionControlFilter> registrationBean =
+                new FilterRegistrationBean<>(new AdmissionControlFilter(rateLimitConfig.getAdmission(), blocklist));
+        registrationBean.addUrlPatterns("/*");
+        // After character encoding, before the Spring Security chain (and so before JwtAuthenticationFilter)
+        registrationBean.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 10);
+        return registrationBean;
+    }
+}
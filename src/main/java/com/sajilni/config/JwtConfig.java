@@ -36,4 +36,27 @@ public class JwtConfig {
     private String privateKeyPath = "classpath:certs/private_key.pem";
     private String publicKeyPath = "classpath:certs/public_key.pem";
     private boolean generateKeysIfMissing = true;
-}
\ No newline at end of file
+
+    /** Build the principal from verified claims instead of loading the user row per request. */
+    private boolean statelessPrincipal = true;
+
+    private Cache cache = new Cache();
+
+    private Revocation revocation = new Revocation();
+
+    /** Verified-token cache used by the authentication filter. */
+    @Getter
+    @Setter
+    public static class Cache {
+        private boolean enabled = true;
+        private long maximumSize = 50_000;
+    }
+
+    /** Local caching of the per-user revocation marker kept in Redis. */
+    @Getter
+    @Setter
+    public static class Revocation {
+        private Duration cacheTtl = Duration.ofSeconds(10);
+        private long maximumSize = 100_000;
+    }
+}
@@ -0,0 +1,120 @@
+package com.sajilni.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binds {@code app.security.rate-limit.*}. The login policy keeps its historical top-level keys;
+ * further policies are declared by name under {@code policies}.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.security.rate-limit")
+@Getter
+@Setter
+public class RateLimitConfig {
+
+    /** Failed logins allowed per {@link #windowSize} before the account is locked out. */
+    private int loginAttempts = 5;
+
+    private Duration windowSize = Duration.ofHours(1);
+
+    private Duration lockoutDuration = Duration.ofMinutes(15);
+
+    private Map<String, Policy> policies = new LinkedHashMap<>();
+
+    /** Heap budget for per-key limiter state, shared by all policies. */
+    private DataSize memoryBudget = DataSize.ofMegabytes(64);
+
+    private Distributed distributed = new Distributed();
+
+    private Admission admission = new Admission();
+
+    private HeavyHitters heavyHitters = new HeavyHitters();
+
+    @Getter
+    @Setter
+    public static class Policy {
+        private int limit;
+        private Duration window;
+        /** Extra lockout applied when the limit is crossed; zero relies on the window alone. */
+        private Duration lockout = Duration.ZERO;
+    }
+
+    /** Cluster-wide limiting through Redis, on top of the per-node limiter. */
+    @Getter
+    @Setter
+    public static class Distributed {
+        private boolean enabled = false;
+        private Duration flushInterval = Duration.ofMillis(5);
+        /** Share of a limit after which a key is recorded and checked against Redis synchronously. */
+        private double exactCheckRatio = 0.6;
+        /** Keys with local batching state; beyond this the least useful are evicted (pending deltas still flush). */
+        private long maximumKeys = 200_000;
+    }
+
+    /** Servlet-level admission control, applied before Spring Security and body parsing. */
+    @Getter
+    @Setter
+    public static class Admission {
+        private boolean enabled = true;
+        /**
+         * Slots per bucket table; keys hashing to the same slot share a bucket. Memory is fixed
+         * at 8 bytes a slot and lookups never allocate, but the table is not exact: once the
+         * number of active clients (IPv4 addresses, IPv6 {@code /64}s) nears this size, unrelated
+         * clients share buckets and are throttled together. An attacker holding many addresses or
+         * prefixes can use that to slow others down, never to get more tokens. Size it well above
+         * the expected active clients per refill period.
+         */
+        private int tableSize = 65_536;
+        /** Applied per client IP to every request. */
+        private Bucket ip = new Bucket(120, 20);
+        /** Applied per client IP and exact servlet path, on top of the IP bucket. */
+        private Map<String, Bucket> routes = new LinkedHashMap<>();
+    }
+
+    /** Fixed-memory failed-login tracking over IP, subnet, email and email domain. */
+    @Getter
+    @Setter
+    public static class HeavyHitters {
+        private int sketchDepth = 4;
+        private int sketchWidth = 4096;
+        private int topK = 20;
+        /** Counters are halved this often (read by the scheduler directly). */
+        private Duration decayInterval = Duration.ofMinutes(10);
+        /**
+         * Put IPs and subnets crossing their thresholds on the blocklist. Off by default: it is
+         * only safe when {@code getRemoteAddr()} is the real client, i.e. the app is reached
+         * directly, or {@code server.forward-headers-strategy} is set and
+         * {@code server.tomcat.remoteip.internal-proxies} covers every proxy in front of it.
+         * Otherwise all clients share the proxy's address and one attacker gets it blocked.
+         */
+        private boolean blockAddresses = false;
+        /** Failed logins from one IP within a decay period that get it blocked. */
+        private int ipBlockThreshold = 50;
+        private int subnetBlockThreshold = 200;
+        private Duration blockDuration = Duration.ofHours(1);
+        private int maxBlocks = 10_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Bucket {
+        private int capacity;
+        private double refillPerSecond;
+
+        public Bucket() {
+        }
+
+        public Bucket(int capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+        }
+    }
+}
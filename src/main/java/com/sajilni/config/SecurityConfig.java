@@ -1,16 +1,18 @@
 package com.sajilni.config;
 
+import com.sajilni.cache.UserAuthCache;
+import com.sajilni.security.BoundedPasswordEncoder;
+import com.sajilni.security.CachedUserAuthenticationProvider;
 import com.sajilni.security.JwtAuthenticationEntryPoint;
 import com.sajilni.security.JwtAuthenticationFilter;
-import com.sajilni.service.UserDetailsServiceImpl;
+import com.sajilni.security.PasswordEncoderFactory;
+import com.sajilni.security.PasswordHashingExecutor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -22,19 +24,29 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 public class SecurityConfig {
     private final JwtAuthenticationEntryPoint entryPoint;
     private final JwtAuthenticationFilter jwtFilter;
-    private final UserDetailsServiceImpl userDetails;
+    private final UserAuthCache userCache;
+    private final PasswordHashingExecutor hashingExecutor;
+    private final PasswordEncoderFactory encoderFactory;
 
     public SecurityConfig(JwtAuthenticationEntryPoint entryPoint,
                           JwtAuthenticationFilter jwtFilter,
-                          UserDetailsServiceImpl userDetails) {
+                          UserAuthCache userCache,
+                          PasswordHashingExecutor hashingExecutor,
+                          PasswordEncoderFactory encoderFactory) {
         this.entryPoint = entryPoint;
         this.jwtFilter = jwtFilter;
-        this.userDetails = userDetails;
+        this.userCache = userCache;
+        this.hashingExecutor = hashingExecutor;
+        this.encoderFactory = encoderFactory;
     }
 
+    /**
+     * Delegating (bcrypt / argon2) encoder with a calibrated cost; hashing runs off the request
+     * threads on the bounded PasswordHashingExecutor.
+     */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BoundedPasswordEncoder(encoderFactory.create(), hashingExecutor);
     }
 
     @Bean
@@ -71,6 +83,9 @@ public class SecurityConfig {
                         // Authentication endpoints - POST only for security
                         .requestMatchers(HttpMethod.POST, "/api/auth/**").permitAll()
 
+                        // Operational endpoints (heavy hitters, blocklist)
+                        .requestMatchers("/api/admin/**").hasRole("ADMIN")
+
                         // All other requests require authentication
                         .anyRequest().authenticated()
                 )
@@ -79,12 +94,13 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Authenticates against the cached auth projection; the resulting principal is the
+     * {@link com.sajilni.cache.CachedUser} itself.
+     */
     @Bean
-    public DaoAuthenticationProvider authenticationProvider() {
-        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
-        provider.setUserDetailsService(userDetails);
-        provider.setPasswordEncoder(passwordEncoder());
-        return provider;
+    public CachedUserAuthenticationProvider authenticationProvider() {
+        return new CachedUserAuthenticationProvider(userCache, passwordEncoder());
     }
 
     /**
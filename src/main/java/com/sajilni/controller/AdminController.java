@@ -0,0 +1,80 @@
+package com.sajilni.controller;
+
+import com.sajilni.domain.response.ApiResponse;
+import com.sajilni.exception.BusinessException;
+import com.sajilni.service.ratelimit.HeavyHitter;
+import com.sajilni.service.ratelimit.HeavyHitterDetector;
+import com.sajilni.service.ratelimit.IpBlocklist;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping(value = "/api/admin", produces = "application/json;charset=UTF-8")
+@Tag(name = "Administration", description = "Abuse monitoring endpoints (ROLE_ADMIN)")
+public class AdminController {
+
+    private final HeavyHitterDetector heavyHitterDetector;
+    private final IpBlocklist blocklist;
+
+    public AdminController(HeavyHitterDetector heavyHitterDetector, IpBlocklist blocklist) {
+        this.heavyHitterDetector = heavyHitterDetector;
+        this.blocklist = blocklist;
+    }
+
+    @GetMapping("/heavy-hitters")
+    @Operation(summary = "Current heavy hitters",
+            description = "Top failed-login sources by IP, subnet, email and email domain (estimates)")
+    public ResponseEntity<ApiResponse<Map<HeavyHitterDetector.Dimension, List<HeavyHitter>>>> heavyHitters() {
+        return ResponseEntity.ok(ApiResponse.<Map<HeavyHitterDetector.Dimension, List<HeavyHitter>>>builder()
+                .success(true)
+                .data(heavyHitterDetector.heavyHitters())
+                .build());
+    }
+
+    @GetMapping("/blocks")
+    @Operation(summary = "Blocked addresses and subnets")
+    public ResponseEntity<ApiResponse<Map<String, Instant>>> blocks() {
+        return ResponseEntity.ok(ApiResponse.<Map<String, Instant>>builder()
+                .success(true)
+                .data(blocklist.snapshot())
+                .build());
+    }
+
+    @PostMapping("/blocks")
+    @Operation(summary = "Block an address or subnet",
+            description = "Target is an IP or a subnet such as 203.0.113.0/24; duration defaults to the configured block duration")
+    public ResponseEntity<ApiResponse<Void>> block(@RequestParam String target,
+                                                   @RequestParam(required = false) Duration duration) {
+        if (!StringUtils.hasText(target)) {
+            throw new BusinessException("block.target.required", "Block target is required", HttpStatus.BAD_REQUEST);
+        }
+        if (!blocklist.block(target.trim(), duration != null ? duration : heavyHitterDetector.getBlockDuration())) {
+            throw new BusinessException("block.list.full", "Blocklist is full", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        log.warn("Manual block of {} by admin", target);
+        return ResponseEntity.ok(ApiResponse.<Void>builder().success(true).message("Blocked").build());
+    }
+
+    @DeleteMapping("/blocks")
+    @Operation(summary = "Unblock an address or subnet",
+            description = "Also clears the target's failed-login counts, so it is not blocked again by its next failure")
+    public ResponseEntity<ApiResponse<Void>> unblock(@RequestParam String target) {
+        boolean removed = blocklist.unblock(target.trim());
+        heavyHitterDetector.forget(target.trim());
+        return ResponseEntity.ok(ApiResponse.<Void>builder()
+                .success(removed)
+                .message(removed ? "Unblocked" : "Not blocked")
+                .build());
+    }
+}
@@ -182,7 +182,7 @@ public class AuthController {
     @PostMapping("/logout")
     @Operation(
             summary = "User logout",
-            description = "Invalidates the current session (client should discard tokens)"
+            description = "Revokes all tokens issued to the current user (client should discard tokens)"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -194,11 +194,11 @@ public class AuthController {
     public ResponseEntity<com.sajilni.domain.response.ApiResponse<Void>> logout(
             @Parameter(hidden = true) @RequestHeader(value = "Authorization", required = false) String authHeader) {
 
-        // In a stateless JWT system, logout is primarily handled client-side
-        // by discarding tokens. For added security, you could maintain a blacklist
-        // of invalidated tokens until their expiration.
+        // Tokens stay signed and unexpired, so logout revokes every token issued
+        // to the user so far; the client should still discard its copies.
 
         log.info("User logout requested");
+        authFacade.logout(authHeader);
 
         return ResponseEntity.ok(com.sajilni.domain.response.ApiResponse.<Void>builder()
                 .success(true)
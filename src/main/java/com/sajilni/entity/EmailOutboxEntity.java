@@ -0,0 +1,46 @@
+package com.sajilni.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "email_outbox")
+public class EmailOutboxEntity {
+
+    public enum Status { PENDING, SENT, FAILED, SUPERSEDED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 32)
+    private String type;            // otp, welcome
+
+    @Column(nullable = false, length = 255)
+    private String recipient;
+
+    @Column(columnDefinition = "TEXT")
+    private String payload;         // JSON template values; cleared once sent
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;  // also the claim lease while a send is in flight
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    private Instant sentAt;
+}
@@ -0,0 +1,66 @@
+package com.sajilni.repository;
+
+import com.sajilni.entity.EmailOutboxEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxEntity, Long> {
+
+    /**
+     * Lock up to {@code limit} due rows. Rows locked by another node's claim are skipped, not
+     * waited on, so concurrent pollers split the backlog. Must run in a transaction.
+     */
+    @Query(value = "SELECT * FROM email_outbox WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+            "ORDER BY next_attempt_at, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<EmailOutboxEntity> lockDue(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query("update EmailOutboxEntity e set e.status = com.sajilni.entity.EmailOutboxEntity.Status.SENT, " +
+            "e.sentAt = :now, e.payload = null " +
+            "where e.id = :id and e.status = com.sajilni.entity.EmailOutboxEntity.Status.PENDING")
+    int markSent(@Param("id") Long id, @Param("now") Instant now);
+
+    /** Extend the lease of pending rows this node still holds. */
+    @Transactional
+    @Modifying
+    @Query("update EmailOutboxEntity e set e.nextAttemptAt = :until " +
+            "where e.id in :ids and e.status = com.sajilni.entity.EmailOutboxEntity.Status.PENDING " +
+            "and e.nextAttemptAt < :until")
+    int renewLeases(@Param("ids") Collection<Long> ids, @Param("until") Instant until);
+
+    /** Retire a pending row that a newer email to the same recipient has replaced. */
+    @Transactional
+    @Modifying
+    @Query("update EmailOutboxEntity e set e.status = com.sajilni.entity.EmailOutboxEntity.Status.SUPERSEDED, " +
+            "e.payload = null " +
+            "where e.id = :id and e.status = com.sajilni.entity.EmailOutboxEntity.Status.PENDING")
+    int markSuperseded(@Param("id") Long id);
+
+    /**
+     * Retire every pending row of {@code type} for {@code recipient} that no relay currently
+     * holds a lease on; joins the caller's transaction. Leased rows may already be on the wire
+     * and are left to the dispatcher.
+     */
+    @Modifying
+    @Query("update EmailOutboxEntity e set e.status = com.sajilni.entity.EmailOutboxEntity.Status.SUPERSEDED, " +
+            "e.payload = null " +
+            "where e.type = :type and e.recipient = :recipient " +
+            "and e.status = com.sajilni.entity.EmailOutboxEntity.Status.PENDING and e.nextAttemptAt <= :now")
+    int supersedePending(@Param("type") String type, @Param("recipient") String recipient, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from EmailOutboxEntity e " +
+            "where e.status <> com.sajilni.entity.EmailOutboxEntity.Status.PENDING and e.createdAt < :before")
+    int deleteCompletedBefore(@Param("before") Instant before);
+}
@@ -2,11 +2,43 @@ package com.sajilni.repository;
 
 import com.sajilni.entity.UserEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 @Repository
 public interface UserRepository extends JpaRepository<UserEntity, Long> {
     boolean existsByEmail(String email);
     Optional<UserEntity> findByEmail(String email);
+
+    @Query("select u.passwordHash from UserEntity u where u.id = :id")
+    Optional<String> findPasswordHashById(@Param("id") Long id);
+
+    /**
+     * Insert a disabled user in one round trip.
+     *
+     * @return the new id, or empty if the email is already registered
+     */
+    @Query(value = "INSERT INTO \"user\" (first_name, last_name, email, password_hash, enabled, created_at, updated_at) " +
+            "VALUES (:firstName, :lastName, :email, :passwordHash, false, :now, :now) " +
+            "ON CONFLICT (email) DO NOTHING RETURNING id", nativeQuery = true)
+    Optional<Long> insertIfAbsent(@Param("firstName") String firstName,
+                                  @Param("lastName") String lastName,
+                                  @Param("email") String email,
+                                  @Param("passwordHash") String passwordHash,
+                                  @Param("now") Instant now);
+
+    /**
+     * Replace the hash only if it is still the one that was checked, so a concurrent password
+     * change is never overwritten by a rehash.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update UserEntity u set u.passwordHash = :newHash, u.updatedAt = CURRENT_TIMESTAMP " +
+            "where u.id = :id and u.passwordHash = :oldHash")
+    int updatePasswordHash(@Param("id") Long id, @Param("oldHash") String oldHash, @Param("newHash") String newHash);
 }
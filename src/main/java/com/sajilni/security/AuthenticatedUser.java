@@ -0,0 +1,16 @@
+package com.sajilni.security;
+
+import java.io.Serializable;
+import java.security.Principal;
+
+/**
+ * Principal rebuilt from a verified access token, so authenticated requests
+ * do not need to load the user row just to populate the security context.
+ */
+public record AuthenticatedUser(Long userId, String email) implements Principal, Serializable {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -0,0 +1,77 @@
+package com.sajilni.security;
+
+import com.sajilni.cache.CachedUser;
+import com.sajilni.cache.UserAuthCache;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Collections;
+
+/**
+ * Username/password provider that authenticates against the {@link CachedUser} projection and
+ * returns it as the principal, so the login flow mints tokens from the user it just verified
+ * instead of loading the row a second time.
+ * <p>
+ * Checks mirror {@code DaoAuthenticationProvider}: a disabled account is reported before the
+ * password is checked, and an unknown email is reported as bad credentials after hashing
+ * against a dummy hash, so response time does not reveal which emails exist.
+ */
+public class CachedUserAuthenticationProvider implements AuthenticationProvider {
+    private static final String USER_NOT_FOUND_PASSWORD = "userNotFoundPassword";
+
+    private final UserAuthCache userCache;
+    private final PasswordEncoder encoder;
+    private volatile String userNotFoundHash;
+
+    public CachedUserAuthenticationProvider(UserAuthCache userCache, PasswordEncoder encoder) {
+        this.userCache = userCache;
+        this.encoder = encoder;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String email = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (email == null || credentials == null) {
+            throw new BadCredentialsException("Bad credentials");
+        }
+        String password = credentials.toString();
+
+        CachedUser user = userCache.getWithCredentials(email).orElse(null);
+        if (user == null) {
+            encoder.matches(password, userNotFoundHash());
+            throw new BadCredentialsException("Bad credentials");
+        }
+        if (!user.enabled()) {
+            throw new DisabledException("User is disabled");
+        }
+        if (!encoder.matches(password, user.passwordHash())) {
+            throw new BadCredentialsException("Bad credentials");
+        }
+
+        UsernamePasswordAuthenticationToken result = UsernamePasswordAuthenticationToken.authenticated(
+                user, null, Collections.emptyList());
+        result.setDetails(authentication.getDetails());
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+
+    private String userNotFoundHash() {
+        String hash = userNotFoundHash;
+        if (hash == null) {
+            // Encoded lazily with the configured cost; a racing duplicate is harmless
+            hash = encoder.encode(USER_NOT_FOUND_PASSWORD);
+            userNotFoundHash = hash;
+        }
+        return hash;
+    }
+}
@@ -1,15 +1,20 @@
 package com.sajilni.security;
 
-import com.sajilni.service.JwtService;
+import com.sajilni.config.JwtConfig;
+import com.sajilni.service.TokenRevocationService;
 import com.sajilni.service.UserDetailsServiceImpl;
+import com.sajilni.service.VerifiedToken;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -18,6 +23,12 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -25,13 +36,28 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private static final String AUTHORIZATION_HEADER = "Authorization";
     private static final String BEARER_PREFIX = "Bearer ";
     private static final int BEARER_PREFIX_LENGTH = 7;
+    private static final List<GrantedAuthority> ADMIN_AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_ADMIN"));
 
-    private final JwtService jwtService;
+    private final VerifiedTokenCache tokenCache;
+    private final TokenRevocationService revocationService;
     private final UserDetailsServiceImpl userDetailsService;
-
-    public JwtAuthenticationFilter(JwtService jwtService, UserDetailsServiceImpl userDetailsService) {
-        this.jwtService = jwtService;
+    private final JwtConfig jwtConfig;
+    private final Set<String> adminEmails;
+
+    public JwtAuthenticationFilter(VerifiedTokenCache tokenCache,
+                                   TokenRevocationService revocationService,
+                                   UserDetailsServiceImpl userDetailsService,
+                                   JwtConfig jwtConfig,
+                                   @Value("${app.security.admin-emails:}") Set<String> adminEmails) {
+        this.tokenCache = tokenCache;
+        this.revocationService = revocationService;
         this.userDetailsService = userDetailsService;
+        this.jwtConfig = jwtConfig;
+        this.adminEmails = adminEmails.stream()
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .map(e -> e.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
     }
 
     @Override
@@ -78,20 +104,29 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
      * Authenticate user based on JWT token
      */
     private void authenticateUser(String token, HttpServletRequest request) {
-        if (!jwtService.validateToken(token)) {
+        VerifiedToken verified = tokenCache.verify(token).orElse(null);
+        if (verified == null || !verified.isAccessToken()) {
             logger.debug("Invalid JWT token for request: {}", request.getRequestURI());
             return;
         }
 
-        String email = jwtService.getEmailFromToken(token);
+        String email = verified.email();
         if (!StringUtils.hasText(email)) {
             logger.debug("No email found in JWT token");
             return;
         }
 
-        UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-        UsernamePasswordAuthenticationToken authentication =
-                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        if (revocationService.isRevoked(verified)) {
+            logger.debug("Revoked JWT token for request: {}", request.getRequestURI());
+            return;
+        }
+
+        UsernamePasswordAuthenticationToken authentication = jwtConfig.isStatelessPrincipal()
+                ? authenticationFromClaims(verified)
+                : authenticationFromUserDetails(email);
+        if (authentication == null) {
+            return;
+        }
 
         authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
         SecurityContextHolder.getContext().setAuthentication(authentication);
@@ -99,6 +134,27 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         logger.debug("Successfully authenticated user: {} for request: {}", email, request.getRequestURI());
     }
 
+    /**
+     * Build the authentication from the signed claims alone; no database access.
+     */
+    private UsernamePasswordAuthenticationToken authenticationFromClaims(VerifiedToken verified) {
+        if (verified.userId() == null || Boolean.FALSE.equals(verified.enabled())) {
+            logger.debug("JWT token for {} is missing userId or account is disabled", verified.email());
+            return null;
+        }
+        AuthenticatedUser principal = new AuthenticatedUser(verified.userId(), verified.email());
+        return new UsernamePasswordAuthenticationToken(principal, null, authoritiesFor(verified.email(), List.of()));
+    }
+
+    /**
+     * Legacy mode: reload the user on every request (app.jwt.stateless-principal=false).
+     */
+    private UsernamePasswordAuthenticationToken authenticationFromUserDetails(String email) {
+        UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+        return new UsernamePasswordAuthenticationToken(userDetails, null,
+                authoritiesFor(email, userDetails.getAuthorities()));
+    }
+
     /**
      * TODO: Since your SecurityConfig already handles public endpoints with .permitAll(),
      * we can remove most path checking from the filter.
@@ -111,4 +167,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         // Only skip if absolutely necessary (like internal health checks)
         return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Accounts listed in app.security.admin-emails additionally get ROLE_ADMIN.
+     */
+    private Collection<? extends GrantedAuthority> authoritiesFor(String email,
+                                                                  Collection<? extends GrantedAuthority> granted) {
+        if (adminEmails.isEmpty() || !adminEmails.contains(email.toLowerCase(Locale.ROOT))) {
+            return granted;
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(granted);
+        authorities.addAll(ADMIN_AUTHORITIES);
+        return authorities;
+    }
+}
@@ -0,0 +1,107 @@
+package com.sajilni.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the {@link DelegatingPasswordEncoder} behind the application's PasswordEncoder bean.
+ * <p>
+ * New hashes use {@code algorithm} ({@code bcrypt}, or {@code argon2} when BouncyCastle is on the
+ * classpath) and are stored with an {@code {id}} prefix. Unprefixed hashes from before this
+ * setup are read as BCrypt. Anything not produced by the current encoder and cost reports
+ * {@code upgradeEncoding() == true} and is rehashed on the next successful login.
+ * <p>
+ * With {@code bcrypt-strength: 0} the BCrypt cost is calibrated at startup: strengths from
+ * {@code min-strength} up are timed and the highest one whose p99 stays within
+ * {@code target-p99} on this hardware is used.
+ */
+@Slf4j
+@Component
+public class PasswordEncoderFactory {
+    private static final String BCRYPT = "bcrypt";
+    private static final String ARGON2 = "argon2";
+    private static final String CALIBRATION_PASSWORD = "calibration-Password-1";
+
+    @Value("${app.security.password-hashing.algorithm:bcrypt}")
+    private String algorithm;
+
+    @Value("${app.security.password-hashing.bcrypt-strength:0}")
+    private int bcryptStrength;
+
+    @Value("${app.security.password-hashing.target-p99:250ms}")
+    private Duration targetP99;
+
+    @Value("${app.security.password-hashing.min-strength:10}")
+    private int minStrength;
+
+    @Value("${app.security.password-hashing.max-strength:14}")
+    private int maxStrength;
+
+    @Value("${app.security.password-hashing.calibration-samples:5}")
+    private int calibrationSamples;
+
+    public PasswordEncoder create() {
+        int strength = bcryptStrength > 0 ? bcryptStrength : calibrateBcryptStrength();
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT, bcrypt);
+        boolean argon2Available = ClassUtils.isPresent("org.bouncycastle.crypto.generators.Argon2BytesGenerator", null);
+        if (argon2Available) {
+            encoders.put(ARGON2, Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        }
+
+        String idForEncode = BCRYPT;
+        if (ARGON2.equalsIgnoreCase(algorithm)) {
+            if (argon2Available) {
+                idForEncode = ARGON2;
+            } else {
+                log.warn("Argon2 requested but BouncyCastle is not on the classpath; hashing with BCrypt");
+            }
+        }
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(idForEncode, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt); // legacy hashes have no {id} prefix
+        log.info("Password hashing: {} (BCrypt strength {})", idForEncode, strength);
+        return encoder;
+    }
+
+    private int calibrateBcryptStrength() {
+        int chosen = minStrength;
+        for (int strength = minStrength; strength <= maxStrength; strength++) {
+            long p99 = measureP99Nanos(new BCryptPasswordEncoder(strength));
+            log.debug("BCrypt strength {} p99 {} ms", strength, p99 / 1_000_000);
+            if (p99 > targetP99.toNanos()) {
+                break;
+            }
+            chosen = strength;
+        }
+        log.info("Calibrated BCrypt strength {} for a p99 target of {} ms", chosen, targetP99.toMillis());
+        return chosen;
+    }
+
+    /** p99 of the sampled hash times; for small sample counts that is the slowest sample. */
+    private long measureP99Nanos(BCryptPasswordEncoder encoder) {
+        encoder.encode(CALIBRATION_PASSWORD); // warm-up
+        int samples = Math.max(1, calibrationSamples);
+        long[] timings = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            encoder.encode(CALIBRATION_PASSWORD);
+            timings[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(timings);
+        return timings[Math.max(0, (int) Math.ceil(samples * 0.99) - 1)];
+    }
+}
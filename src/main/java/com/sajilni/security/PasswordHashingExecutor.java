@@ -0,0 +1,132 @@
+package com.sajilni.security;
+
+import com.sajilni.exception.BusinessException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, CPU-sized pool that runs every password hash and check.
+ * <p>
+ * Request threads hand the work over and wait, so at most {@code threads} hashes burn CPU at
+ * once no matter how many Tomcat threads are busy, and cheap endpoints keep their share. When
+ * the queue is full, or a queued hash has not finished within {@code max-wait}, the caller gets
+ * a 503 ({@code auth.busy}) straight away instead of piling up.
+ * <p>
+ * Metrics: {@code password.hash.queue.wait}, {@code password.hash.time},
+ * {@code password.hash.rejected}, {@code password.hash.queue.size}.
+ */
+@Slf4j
+@Component
+public class PasswordHashingExecutor {
+    private final ThreadPoolExecutor executor;
+    private final Duration maxWait;
+    private final Timer queueWait;
+    private final Timer hashTime;
+    private final Counter rejected;
+
+    public PasswordHashingExecutor(MeterRegistry meterRegistry,
+                                   @Value("${app.security.password-hashing.threads:0}") int threads,
+                                   @Value("${app.security.password-hashing.queue-capacity:64}") int queueCapacity,
+                                   @Value("${app.security.password-hashing.max-wait:5s}") Duration maxWait) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + sequence.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.maxWait = maxWait;
+
+        this.queueWait = Timer.builder("password.hash.queue.wait")
+                .description("Time a password hash waited for a hashing thread")
+                .register(meterRegistry);
+        this.hashTime = Timer.builder("password.hash.time")
+                .description("Time spent computing a password hash")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("password.hash.rejected")
+                .description("Password hashes rejected because the hashing pool was saturated")
+                .register(meterRegistry);
+        Gauge.builder("password.hash.queue.size", executor, e -> e.getQueue().size())
+                .description("Password hashes waiting for a hashing thread")
+                .register(meterRegistry);
+        log.info("Password hashing pool: {} threads, queue capacity {}", poolSize, queueCapacity);
+    }
+
+    /**
+     * Run {@code hash} on the hashing pool and wait for its result.
+     * <p>
+     * On timeout the caller gets its 503 but the work is not reclaimed: {@code cancel(true)}
+     * only keeps a hash that is still queued from starting. BCrypt never checks the interrupt,
+     * so a hash that has started runs to completion on its pool thread and its result is thrown
+     * away. {@code max-wait} therefore bounds how long a request waits, not how much CPU a
+     * burst of logins can consume; that is bounded by {@code threads}.
+     *
+     * @throws BusinessException 503 {@code auth.busy} if the pool is saturated
+     */
+    public <T> T execute(Supplier<T> hash) {
+        long submitted = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long started = System.nanoTime();
+                queueWait.record(started - submitted, TimeUnit.NANOSECONDS);
+                try {
+                    return hash.get();
+                } finally {
+                    hashTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            throw busy();
+        }
+
+        try {
+            return future.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | CancellationException ex) {
+            future.cancel(true);
+            throw busy();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw busy();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", ex.getCause());
+        }
+    }
+
+    private BusinessException busy() {
+        rejected.increment();
+        return new BusinessException("auth.busy",
+                "The service is busy. Please try again shortly.", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,107 @@
+package com.sajilni.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sajilni.config.JwtConfig;
+import com.sajilni.service.JwtService;
+import com.sajilni.service.VerifiedToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Bounded cache of already-verified JWTs, keyed by a SHA-256 digest of the raw token so the
+ * token itself is never retained. Entries expire at the token's own {@code exp} and are
+ * otherwise evicted by size; hit/miss counts are published as {@code cache.*{cache=jwt.verified}}.
+ */
+@Component
+public class VerifiedTokenCache {
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final JwtService jwtService;
+    private final boolean enabled;
+    private final Cache<String, VerifiedToken> cache;
+
+    public VerifiedTokenCache(JwtService jwtService, JwtConfig jwtConfig, MeterRegistry meterRegistry) {
+        this.jwtService = jwtService;
+        this.enabled = jwtConfig.getCache().isEnabled();
+        Duration fallbackTtl = jwtConfig.getExpirationMs();
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(jwtConfig.getCache().getMaximumSize())
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                        if (token.expiresAt() == null) {
+                            return fallbackTtl.toNanos();
+                        }
+                        long remaining = Duration.between(Instant.now(), token.expiresAt()).toNanos();
+                        return Math.max(0, remaining);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken token,
+                                                  long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken token,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.verified");
+    }
+
+    /**
+     * Return the verified claims for a token, verifying it only on a cache miss.
+     * Invalid tokens are never cached, so they are re-checked (and rejected) every time.
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        if (!enabled) {
+            return jwtService.verify(token);
+        }
+
+        String key = digest(token);
+        VerifiedToken cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<VerifiedToken> verified = jwtService.verify(token);
+        verified.ifPresent(v -> cache.put(key, v));
+        return verified;
+    }
+
+    public void invalidate(String token) {
+        cache.invalidate(digest(token));
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static String digest(String token) {
+        byte[] hash = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+}
@@ -1,18 +1,20 @@
 package com.sajilni.service;
 
+import com.sajilni.cache.CachedUser;
 import com.sajilni.domain.request.OtpRequest;
 import com.sajilni.domain.request.RegisterReq;
 import com.sajilni.domain.response.*;
 import com.sajilni.dto.*;
 import com.sajilni.entity.UserEntity;
 import com.sajilni.exception.BusinessException;
+import com.sajilni.service.otp.IssuedOtp;
+import com.sajilni.service.otp.OtpVerification;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Locale;
 
@@ -38,25 +40,31 @@ public class AuthFacade {
         this.messageSource = messageSource;
     }
 
-    @Transactional
+    /**
+     * Registration runs in stages so no database connection is held across slow work: the
+     * password is hashed first, then the user row, the OTP and its outbox email are written in
+     * one short transaction. The email is sent by the outbox relay only once that transaction
+     * has committed.
+     */
     public ResponseEntity<ApiResponse<RegisterResponse>> register(RegisterReq registerReq) {
         Locale locale = LocaleContextHolder.getLocale();
 
         try {
-            // Create user (will throw exception if exists)
-            UserEntity userEntity = userService.createUser(registerReq);
-
-            // Generate OTP with challenge tracking
-            String otpCode = otpService.generate(userEntity.getEmail());
-
-            // Send OTP email asynchronously
-            mailService.sendOtpAsync(userEntity.getEmail(), otpCode, userEntity.getFirstName());
+            // Hash, then insert the user, issue the OTP and queue its email in one transaction
+            // (will throw exception if exists)
+            Registration registration = userService.createUser(registerReq, user -> {
+                IssuedOtp issued = otpService.generate(user.getEmail());
+                mailService.queueOtp(user.getEmail(), issued.code());
+                return new Registration(user, issued);
+            });
+            UserEntity userEntity = registration.user();
+            IssuedOtp otp = registration.otp();
 
             String message = messageSource.getMessage("user.registered", null, locale);
 
             RegisterResponse response = RegisterResponse.builder()
                     .email(userEntity.getEmail())
-                    .remainingAttempts(otpService.getRemainingAttempts(userEntity.getEmail()))
+                    .remainingAttempts(otp.remainingAttempts())
                     .build();
 
             log.info("User registered successfully: {}", userEntity.getEmail());
@@ -74,17 +82,18 @@ public class AuthFacade {
         }
     }
 
-    @Transactional
+    /**
+     * Not transactional: enabling the user and queueing the welcome email commit together in
+     * {@link UserService#enableUser}.
+     */
     public ResponseEntity<ApiResponse<OtpVerificationResponse>> verifyOtp(VerifyOtpDto dto) {
         Locale locale = LocaleContextHolder.getLocale();
 
         try {
-            boolean isValid = otpService.verify(dto.getEmail(), dto.getOtp());
-
-            if (!isValid) {
-                int remainingAttempts = otpService.getRemainingAttempts(dto.getEmail());
+            OtpVerification result = otpService.verify(dto.getEmail(), dto.getOtp());
 
-                if (remainingAttempts <= 0) {
+            if (!result.verified()) {
+                if (result.locked()) {
                     String message = messageSource.getMessage("otp.locked", null, locale);
                     throw new BusinessException("otp.locked", message, HttpStatus.FORBIDDEN);
                 }
@@ -93,7 +102,7 @@ public class AuthFacade {
 
                 OtpVerificationResponse response = OtpVerificationResponse.builder()
                         .verified(false)
-                        .remainingAttempts(remainingAttempts)
+                        .remainingAttempts(result.remainingAttempts())
                         .build();
 
                 return ResponseEntity.badRequest()
@@ -104,12 +113,9 @@ public class AuthFacade {
                                 .build());
             }
 
-            // Enable user and get details for welcome email
+            // Enable user; the welcome email is written to the outbox in the same transaction
             UserEntity user = userService.enableUser(dto.getEmail());
 
-            // Send welcome email asynchronously
-            mailService.sendWelcomeEmailAsync(user.getEmail(), user.getFirstName());
-
             String message = messageSource.getMessage("otp.verified", null, locale);
 
             OtpVerificationResponse response = OtpVerificationResponse.builder()
@@ -149,28 +155,28 @@ public class AuthFacade {
 
         try {
             // Check if user exists and is not verified
-            UserEntity user = userService.findByEmailOrThrow(dto.getEmail());
+            CachedUser user = userService.findAuthByEmailOrThrow(dto.getEmail());
 
-            if (user.isEnabled()) {
+            if (user.enabled()) {
                 throw new BusinessException("user.already.verified",
                         "User is already verified", HttpStatus.BAD_REQUEST);
             }
 
             // Generate new OTP (will handle rate limiting internally)
-            String otpCode = otpService.generate(user.getEmail());
+            IssuedOtp otp = otpService.generate(user.email());
 
-            // Send OTP email
-            mailService.sendOtpAsync(user.getEmail(), otpCode, user.getFirstName());
+            // Queue the OTP email; an earlier one still waiting to go out is superseded
+            mailService.queueOtp(user.email(), otp.code());
 
             String message = messageSource.getMessage("otp.sent", null,
                     "New verification code sent to your email", locale);
 
             OtpResponse response = OtpResponse.builder()
-                    .email(user.getEmail())
-                    .remainingAttempts(otpService.getRemainingAttempts(user.getEmail()))
+                    .email(user.email())
+                    .remainingAttempts(otp.remainingAttempts())
                     .build();
 
-            log.info("New OTP requested for: {}", user.getEmail());
+            log.info("New OTP requested for: {}", user.email());
 
             return ResponseEntity.ok(ApiResponse.<OtpResponse>builder()
                     .success(true)
@@ -187,6 +193,12 @@ public class AuthFacade {
         }
     }
 
+    public void logout(String authHeader) {
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            authenticationService.logout(authHeader.substring("Bearer ".length()));
+        }
+    }
+
     public ResponseEntity<ApiResponse<TokenResponse>> refreshToken(RefreshTokenDto dto) {
         try {
             return authenticationService.refreshToken(dto);
@@ -195,4 +207,6 @@ public class AuthFacade {
             throw ex;
         }
     }
+
+    private record Registration(UserEntity user, IssuedOtp otp) {}
 }
\ No newline at end of file
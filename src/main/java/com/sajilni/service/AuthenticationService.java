@@ -4,8 +4,9 @@ import com.sajilni.domain.response.ApiResponse;
 import com.sajilni.domain.response.LoginResponse;
 import com.sajilni.domain.response.TokenResponse;
 import com.sajilni.dto.*;
-import com.sajilni.entity.UserEntity;
+import com.sajilni.cache.CachedUser;
 import com.sajilni.exception.BusinessException;
+import com.sajilni.service.ratelimit.HeavyHitterDetector;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -17,6 +18,8 @@ import org.springframework.security.authentication.*;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.time.Duration;
 import java.util.HashMap;
@@ -31,17 +34,26 @@ public class AuthenticationService {
     private final JwtService jwtService;
     private final MessageSource messageSource;
     private final RateLimitService rateLimitService;
+    private final TokenRevocationService revocationService;
+    private final HeavyHitterDetector heavyHitters;
+    private final PasswordRehashService rehashService;
 
     public AuthenticationService(AuthenticationManager authManager,
                                  UserService userService,
                                  JwtService jwtService,
                                  MessageSource messageSource,
-                                 RateLimitService rateLimitService) {
+                                 RateLimitService rateLimitService,
+                                 TokenRevocationService revocationService,
+                                 HeavyHitterDetector heavyHitters,
+                                 PasswordRehashService rehashService) {
         this.authManager = authManager;
         this.userService = userService;
         this.jwtService = jwtService;
         this.messageSource = messageSource;
         this.rateLimitService = rateLimitService;
+        this.revocationService = revocationService;
+        this.heavyHitters = heavyHitters;
+        this.rehashService = rehashService;
     }
 
     public ResponseEntity<ApiResponse<LoginResponse>> authenticate(LoginDto dto) {
@@ -60,18 +72,18 @@ public class AuthenticationService {
             Authentication auth = authManager.authenticate(
                     new UsernamePasswordAuthenticationToken(email, dto.getPassword()));
 
-            if (!auth.isAuthenticated()) {
-                rateLimitService.recordFailedLoginAttempt(email);
+            if (!auth.isAuthenticated() || !(auth.getPrincipal() instanceof CachedUser user)) {
+                recordFailedLogin(email);
                 throw new BadCredentialsException("Authentication failed");
             }
 
-            // Get user details
-            UserEntity userEntity = userService.findByEmailOrThrow(email);
+            // Upgrade an outdated hash in the background while the password is at hand
+            rehashService.rehashIfOutdated(user, dto.getPassword());
 
             // Generate tokens
-            Map<String, Object> claims = buildTokenClaims(userEntity);
-            String accessToken = jwtService.generateToken(email, userEntity.getId(), claims);
-            String refreshToken = jwtService.generateRefreshToken(email, userEntity.getId());
+            Map<String, Object> claims = buildTokenClaims(user);
+            String accessToken = jwtService.generateToken(email, user.id(), claims);
+            String refreshToken = jwtService.generateRefreshToken(email, user.id());
 
             // Calculate expiration
             Duration expiration = jwtService.getTokenExpiration();
@@ -85,11 +97,11 @@ public class AuthenticationService {
                     .expiresIn(expiration.toSeconds())
                     .tokenType("Bearer")
                     .user(UserInfo.builder()
-                            .id(userEntity.getId())
-                            .email(userEntity.getEmail())
-                            .firstName(userEntity.getFirstName())
-                            .lastName(userEntity.getLastName())
-                            .enabled(userEntity.isEnabled())
+                            .id(user.id())
+                            .email(user.email())
+                            .firstName(user.firstName())
+                            .lastName(user.lastName())
+                            .enabled(user.enabled())
                             .build())
                     .build();
 
@@ -105,7 +117,7 @@ public class AuthenticationService {
                     .build());
 
         } catch (DisabledException e) {
-            rateLimitService.recordFailedLoginAttempt(email);
+            recordFailedLogin(email);
             String message = messageSource.getMessage("auth.unverified", null,
                     "Please verify your email before logging in", locale);
             throw new BusinessException("auth.unverified", message, HttpStatus.FORBIDDEN);
@@ -116,13 +128,13 @@ public class AuthenticationService {
             throw new BusinessException("account.locked", message, HttpStatus.LOCKED);
 
         } catch (BadCredentialsException e) {
-            rateLimitService.recordFailedLoginAttempt(email);
+            recordFailedLogin(email);
             String message = messageSource.getMessage("auth.bad", null,
                     "Invalid email or password", locale);
             throw new BusinessException("auth.bad", message, HttpStatus.UNAUTHORIZED);
 
         } catch (AuthenticationException e) {
-            rateLimitService.recordFailedLoginAttempt(email);
+            recordFailedLogin(email);
             String message = messageSource.getMessage("auth.failed", null,
                     "Authentication failed", locale);
             throw new BusinessException("auth.failed", message, HttpStatus.UNAUTHORIZED);
@@ -135,28 +147,29 @@ public class AuthenticationService {
         try {
             String refreshToken = dto.getRefreshToken();
 
-            // Validate refresh token
-            if (!jwtService.validateToken(refreshToken) || !jwtService.isRefreshToken(refreshToken)) {
+            // Validate refresh token (single parse + signature check)
+            VerifiedToken verified = jwtService.verify(refreshToken).orElse(null);
+            if (verified == null || !verified.isRefreshToken() || revocationService.isRevoked(verified)) {
                 String message = messageSource.getMessage("jwt.invalid", null,
                         "Invalid refresh token", locale);
                 throw new BusinessException("jwt.invalid", message, HttpStatus.UNAUTHORIZED);
             }
 
             // Extract user information
-            String email = jwtService.getEmailFromToken(refreshToken);
-            Long userId = jwtService.getUserIdFromToken(refreshToken);
+            String email = verified.email();
+            Long userId = verified.userId();
 
             // Get user details to ensure user still exists and is active
-            UserEntity userEntity = userService.findByEmailOrThrow(email);
+            CachedUser user = userService.findAuthByEmailOrThrow(email);
 
-            if (!userEntity.isEnabled()) {
+            if (!user.enabled()) {
                 String message = messageSource.getMessage("auth.unverified", null,
                         "Account is not verified", locale);
                 throw new BusinessException("auth.unverified", message, HttpStatus.FORBIDDEN);
             }
 
             // Generate new access token
-            Map<String, Object> claims = buildTokenClaims(userEntity);
+            Map<String, Object> claims = buildTokenClaims(user);
             String newAccessToken = jwtService.generateToken(email, userId, claims);
 
             Duration expiration = jwtService.getTokenExpiration();
@@ -188,11 +201,33 @@ public class AuthenticationService {
         }
     }
 
-    private Map<String, Object> buildTokenClaims(UserEntity user) {
+    /**
+     * Revoke every token of the caller identified by the given access token.
+     * Unknown or invalid tokens are ignored: logout is idempotent.
+     */
+    public void logout(String accessToken) {
+        jwtService.verify(accessToken)
+                .filter(VerifiedToken::isAccessToken)
+                .filter(verified -> verified.userId() != null)
+                .ifPresent(verified -> revocationService.revokeAll(verified.userId()));
+    }
+
+    private void recordFailedLogin(String email) {
+        rateLimitService.recordFailedLoginAttempt(email);
+        heavyHitters.recordFailedLogin(currentClientIp(), email);
+    }
+
+    private static String currentClientIp() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                ? attributes.getRequest().getRemoteAddr()
+                : null;
+    }
+
+    private Map<String, Object> buildTokenClaims(CachedUser user) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("firstName", user.getFirstName());
-        claims.put("lastName", user.getLastName());
-        claims.put("enabled", user.isEnabled());
+        claims.put("firstName", user.firstName());
+        claims.put("lastName", user.lastName());
+        claims.put("enabled", user.enabled());
         // Add any additional claims needed
         return claims;
     }
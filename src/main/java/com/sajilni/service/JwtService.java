@@ -2,6 +2,7 @@ package com.sajilni.service;
 
 import com.sajilni.config.JwtConfig;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SecurityException;
@@ -16,12 +17,14 @@ import java.time.Instant;
 import java.util.HashMap;
 import java.util.Date;
 import java.util.Map;
+import java.util.Optional;
 
 @Service
 public class JwtService {
     private static final Logger log = LoggerFactory.getLogger(JwtService.class);
     private final JwtConfig jwtConfig;
     private SecretKey key;
+    private JwtParser parser;
 
     public JwtService(JwtConfig jwtConfig) {
         this.jwtConfig = jwtConfig;
@@ -31,6 +34,11 @@ public class JwtService {
     private void init() {
         byte[] keyBytes = jwtConfig.getSecret().getBytes(StandardCharsets.UTF_8);
         this.key = Keys.hmacShaKeyFor(keyBytes);
+        // JwtParser is immutable and thread-safe, so build it once instead of per token
+        this.parser = Jwts.parser()
+                .verifyWith(key)
+                .requireIssuer(jwtConfig.getIssuer())
+                .build();
     }
 
     public String generateToken(String email, Long userId, Map<String, Object> claims) {
@@ -40,6 +48,7 @@ public class JwtService {
                 if (claims != null) payload.putAll(claims);
                 payload.put("userId", userId);
                 payload.put("tokenType", "access"); // distinguish from refresh
+                payload.put(VerifiedToken.ISSUED_AT_MS_CLAIM, now.toEpochMilli());
 
                         return Jwts.builder()
                                 .issuer(jwtConfig.getIssuer())
@@ -61,67 +70,30 @@ public class JwtService {
                                 .subject(email)
                                 .claim("userId", userId)
                                 .claim("tokenType", "refresh")
+                                .claim(VerifiedToken.ISSUED_AT_MS_CLAIM, now.toEpochMilli())
                                 .issuedAt(Date.from(now))
                                 .expiration(Date.from(expiry))
                                 .signWith(key)
                                 .compact();
     }
 
-    public String getEmailFromToken(String token) {
-        return getClaims(token).getSubject();
-    }
-
-    public Long getUserIdFromToken(String token) {
-        return getClaims(token).get("userId", Long.class);
-    }
-
-    public boolean validateToken(String token) {
+    /**
+     * Parse and verify a token exactly once. Signature, issuer and expiry are all checked
+     * by the shared parser; an empty result means the token must not be trusted.
+     */
+    public Optional<VerifiedToken> verify(String token) {
         try {
-            getClaims(token);
-            return true;
+            return Optional.of(VerifiedToken.from(getClaims(token)));
         } catch (SecurityException ex) {
             log.error("Invalid JWT signature: {}", ex.getMessage());
         } catch (Exception ex) {
             log.error("JWT validation error: {}", ex.getMessage());
         }
-        return false;
-    }
-
-    public boolean isTokenExpired(String token) {
-        try {
-            return getClaims(token).getExpiration().before(new Date());
-        } catch (Exception e) {
-            return true;
-        }
+        return Optional.empty();
     }
 
-    /** True iff the token has "tokenType":"refresh". */
-    public boolean isRefreshToken(String token) {
-                try {
-                        String type = getClaims(token).get("tokenType", String.class);
-                        return "refresh".equals(type);
-                    } catch (Exception e) {
-                        return false;
-                    }
-            }
-
-            /** Optional: check access type explicitly. */
-            public boolean isAccessToken(String token) {
-                try {
-                        String type = getClaims(token).get("tokenType", String.class);
-                        return "access".equals(type);
-                    } catch (Exception e) {
-                        return false;
-                    }
-            }
-
     public Claims getClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(key)
-                .requireIssuer(jwtConfig.getIssuer())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
 
         /** Access token lifetime (used by AuthenticationService.expiresIn). */
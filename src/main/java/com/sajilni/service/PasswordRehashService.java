@@ -0,0 +1,84 @@
+package com.sajilni.service;
+
+import com.sajilni.cache.CachedUser;
+import com.sajilni.cache.UserAuthCache;
+import com.sajilni.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upgrades outdated password hashes (older algorithm, lower cost, or no {@code {id}} prefix)
+ * after a successful login, off the request thread. The queue is bounded and drops work when
+ * full; a dropped rehash simply happens on a later login.
+ */
+@Slf4j
+@Service
+public class PasswordRehashService {
+    private static final int QUEUE_CAPACITY = 1_000;
+
+    private final UserRepository users;
+    private final UserAuthCache userCache;
+    private final PasswordEncoder encoder;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+
+    public PasswordRehashService(UserRepository users, UserAuthCache userCache, PasswordEncoder encoder,
+                                 MeterRegistry meterRegistry) {
+        this.users = users;
+        this.userCache = userCache;
+        this.encoder = encoder;
+        this.meterRegistry = meterRegistry;
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                r -> {
+                    Thread t = new Thread(r, "password-rehash");
+                    t.setDaemon(true);
+                    return t;
+                },
+                (r, e) -> record("dropped"));
+    }
+
+    /**
+     * Schedule a rehash if {@code user}'s stored hash is outdated. {@code rawPassword} must be
+     * the password that was just verified against it.
+     */
+    public void rehashIfOutdated(CachedUser user, String rawPassword) {
+        if (!encoder.upgradeEncoding(user.passwordHash())) {
+            return;
+        }
+        executor.execute(() -> rehash(user, rawPassword));
+    }
+
+    private void rehash(CachedUser user, String rawPassword) {
+        try {
+            String newHash = encoder.encode(rawPassword);
+            if (users.updatePasswordHash(user.id(), user.passwordHash(), newHash) > 0) {
+                userCache.invalidate(user.email());
+                record("upgraded");
+                log.debug("Upgraded password hash for user {}", user.id());
+            } else {
+                record("stale");
+            }
+        } catch (RuntimeException ex) {
+            // Includes a saturated hashing pool; the next login retries
+            record("failed");
+            log.debug("Password rehash for user {} skipped: {}", user.id(), ex.getMessage());
+        }
+    }
+
+    private void record(String outcome) {
+        meterRegistry.counter("password.rehash", "outcome", outcome).increment();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
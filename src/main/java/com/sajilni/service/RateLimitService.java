@@ -1,96 +1,127 @@
 // Rate Limiting Service
 package com.sajilni.service;
 
+import com.sajilni.config.RateLimitConfig;
+import com.sajilni.service.expiry.ExpiryService;
+import com.sajilni.service.ratelimit.DistributedRateLimiter;
+import com.sajilni.service.ratelimit.GcraRateLimiter;
+import com.sajilni.service.ratelimit.RateLimitPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Named rate-limit policies on top of {@link GcraRateLimiter}. The {@code login} policy is
+ * built from {@code login-attempts}, {@code window-size} and {@code lockout-duration}; others
+ * come from {@code app.security.rate-limit.policies.<name>}. When the distributed limiter is
+ * enabled, a key is limited if either the per-node or the cluster-wide count says so.
+ * <p>
+ * {@code memory-budget} is split evenly across policies and turned into a per-policy key cap;
+ * keys evicted at the cap are counted as {@code ratelimit.evicted.pressure}.
+ */
 @Slf4j
 @Service
 public class RateLimitService {
 
-    private static final int DEFAULT_MAX_ATTEMPTS = 5;
-    private static final int DEFAULT_LOCKOUT_MINUTES = 15;
+    public static final String LOGIN_POLICY = "login";
 
-    private final ConcurrentHashMap<String, LoginAttempts> loginAttempts = new ConcurrentHashMap<>();
+    /**
+     * Heap per tracked key from {@code RateLimiterFootprintBenchmark}: map node, key string, state
+     * holder and its expiry timer. About 250 bytes, rounded up for a limiter evicting at its cap.
+     */
+    private static final long ESTIMATED_ENTRY_BYTES = 300;
 
-    @Value("${app.security.rate-limit.login-attempts:5}")
-    private int maxLoginAttempts;
+    private final Map<String, GcraRateLimiter> limiters = new ConcurrentHashMap<>();
+    private final GcraRateLimiter loginLimiter;
+    private final DistributedRateLimiter distributed;
 
-    @Value("${app.security.rate-limit.lockout-duration:15m}")
-    private String lockoutDurationString;
+    public RateLimitService(RateLimitConfig config, ExpiryService expiryService,
+                            Optional<DistributedRateLimiter> distributed, MeterRegistry meterRegistry) {
+        this.distributed = distributed.orElse(null);
+        long maximumSize = Math.max(1_000,
+                config.getMemoryBudget().toBytes() / (1 + config.getPolicies().size()) / ESTIMATED_ENTRY_BYTES);
+
+        this.loginLimiter = newLimiter(new RateLimitPolicy(LOGIN_POLICY, config.getLoginAttempts(),
+                config.getWindowSize(), config.getLockoutDuration()), expiryService, maximumSize, meterRegistry);
+        limiters.put(LOGIN_POLICY, loginLimiter);
+
+        config.getPolicies().forEach((name, policy) -> limiters.put(name, newLimiter(
+                new RateLimitPolicy(name, policy.getLimit(), policy.getWindow(), policy.getLockout()),
+                expiryService, maximumSize, meterRegistry)));
+    }
 
     public boolean isLoginRateLimited(String email) {
-        LoginAttempts attempts = loginAttempts.get(email.toLowerCase());
+        return isLimited(loginLimiter, email.toLowerCase());
+    }
 
-        if (attempts == null) {
-            return false;
+    public void recordFailedLoginAttempt(String email) {
+        if (record(loginLimiter, email.toLowerCase())) {
+            log.warn("Failed login attempt recorded for: {} (now rate limited)", email);
+        } else {
+            log.warn("Failed login attempt recorded for: {}", email);
         }
+    }
 
-        // Check if lockout period has expired
-        if (LocalDateTime.now().isAfter(attempts.lockoutUntil())) {
-            loginAttempts.remove(email.toLowerCase());
-            return false;
-        }
+    public void resetFailedLoginAttempts(String email) {
+        reset(loginLimiter, email.toLowerCase());
+        log.debug("Reset failed login attempts for: {}", email);
+    }
 
-        return attempts.count() >= maxLoginAttempts;
+    public boolean isLimited(String policy, String key) {
+        return isLimited(limiter(policy), key);
     }
 
-    public void recordFailedLoginAttempt(String email) {
-        String key = email.toLowerCase();
-        LocalDateTime now = LocalDateTime.now();
+    /**
+     * Count one event against {@code policy} for {@code key}.
+     *
+     * @return whether the key is limited after this event
+     */
+    public boolean record(String policy, String key) {
+        return record(limiter(policy), key);
+    }
 
-        LoginAttempts current = loginAttempts.get(key);
+    public void reset(String policy, String key) {
+        reset(limiter(policy), key);
+    }
 
-        if (current == null) {
-            // First failed attempt
-            loginAttempts.put(key, new LoginAttempts(1, now, now.plusMinutes(DEFAULT_LOCKOUT_MINUTES)));
-        } else {
-            // Increment attempts
-            int newCount = current.count() + 1;
-            LocalDateTime lockoutUntil = newCount >= maxLoginAttempts ?
-                    now.plusMinutes(DEFAULT_LOCKOUT_MINUTES) : current.lockoutUntil();
+    private boolean isLimited(GcraRateLimiter limiter, String key) {
+        return limiter.isLimited(key) || (distributed != null && distributed.isLimited(limiter.policy(), key));
+    }
 
-            loginAttempts.put(key, new LoginAttempts(newCount, current.firstAttempt(), lockoutUntil));
+    private boolean record(GcraRateLimiter limiter, String key) {
+        boolean limited = limiter.record(key);
+        if (distributed != null) {
+            limited |= distributed.record(limiter.policy(), key);
         }
-
-        log.warn("Failed login attempt recorded for: {} (attempts: {})",
-                email, loginAttempts.get(key).count());
+        return limited;
     }
 
-    public void resetFailedLoginAttempts(String email) {
-        String removed = loginAttempts.remove(email.toLowerCase()) != null ? email : null;
-        if (removed != null) {
-            log.info("Reset failed login attempts for: {}", email);
+    private void reset(GcraRateLimiter limiter, String key) {
+        limiter.reset(key);
+        if (distributed != null) {
+            distributed.reset(limiter.policy(), key);
         }
     }
 
-    // Cleanup expired entries periodically
-    @org.springframework.scheduling.annotation.Scheduled(fixedRate = 300000) // 5 minutes
-    public void cleanupExpiredAttempts() {
-        LocalDateTime now = LocalDateTime.now();
-        AtomicInteger removed = new AtomicInteger();
-
-        loginAttempts.entrySet().removeIf(entry -> {
-            if (now.isAfter(entry.getValue().lockoutUntil())) {
-                removed.getAndIncrement();
-                return true;
-            }
-            return false;
-        });
-
-        if (removed.get() > 0) {
-            log.debug("Cleaned up {} expired login attempt records", removed);
-        }
+    private static GcraRateLimiter newLimiter(RateLimitPolicy policy, ExpiryService expiryService,
+                                              long maximumSize, MeterRegistry meterRegistry) {
+        Counter evictions = Counter.builder("ratelimit.evicted.pressure")
+                .description("Rate-limit keys evicted because the key cap was reached")
+                .tag("policy", policy.name())
+                .register(meterRegistry);
+        return new GcraRateLimiter(policy, expiryService, maximumSize, evictions);
     }
 
-    private record LoginAttempts(
-            int count,
-            LocalDateTime firstAttempt,
-            LocalDateTime lockoutUntil
-    ) {}
+    private GcraRateLimiter limiter(String policy) {
+        GcraRateLimiter limiter = limiters.get(policy);
+        if (limiter == null) {
+            throw new IllegalArgumentException("Unknown rate limit policy: " + policy);
+        }
+        return limiter;
+    }
 }
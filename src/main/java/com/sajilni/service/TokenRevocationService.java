@@ -0,0 +1,79 @@
+package com.sajilni.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sajilni.config.JwtConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+
+/**
+ * Per-user "tokens issued at or before this instant are revoked" marker.
+ * <p>
+ * The marker lives in Redis so every node sees it; lookups are cached locally for
+ * {@code app.jwt.revocation.cache-ttl}, which bounds how long a revoked token can still
+ * be accepted while keeping the steady-state authenticated path free of remote calls.
+ * <p>
+ * Cutoffs are kept in epoch milliseconds and compared against the millisecond issue time
+ * carried by every token ({@link VerifiedToken#ISSUED_AT_MS_CLAIM}). Second precision would
+ * also revoke a token from a login that happens in the same second as the logout.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+    private static final String KEY_PREFIX = "jwt:revoked-before:";
+    private static final long NOT_REVOKED = 0L;
+
+    private final StringRedisTemplate redis;
+    private final JwtConfig jwtConfig;
+    private final Cache<Long, Long> revokedBefore;
+
+    public TokenRevocationService(StringRedisTemplate redis, JwtConfig jwtConfig) {
+        this.redis = redis;
+        this.jwtConfig = jwtConfig;
+        this.revokedBefore = Caffeine.newBuilder()
+                .maximumSize(jwtConfig.getRevocation().getMaximumSize())
+                .expireAfterWrite(jwtConfig.getRevocation().getCacheTtl())
+                .build();
+    }
+
+    /**
+     * True if the token was issued at or before the user's last revocation.
+     * Fails open when Redis is unreachable: the token signature has already been verified.
+     */
+    public boolean isRevoked(VerifiedToken token) {
+        if (token.userId() == null || token.issuedAt() == null) {
+            return false;
+        }
+        Long cutoff = revokedBefore.getIfPresent(token.userId());
+        if (cutoff == null) {
+            cutoff = loadCutoff(token.userId());
+            if (cutoff == null) {
+                return false;
+            }
+            revokedBefore.put(token.userId(), cutoff);
+        }
+        return cutoff != NOT_REVOKED && token.issuedAt().toEpochMilli() <= cutoff;
+    }
+
+    /** Revoke every access and refresh token issued to the user so far. */
+    public void revokeAll(Long userId) {
+        long cutoff = Instant.now().toEpochMilli();
+        redis.opsForValue().set(KEY_PREFIX + userId, Long.toString(cutoff),
+                jwtConfig.getRefreshExpirationMs());
+        revokedBefore.put(userId, cutoff);
+        log.info("Revoked all tokens for user {} issued up to {}", userId, cutoff);
+    }
+
+    private Long loadCutoff(Long userId) {
+        try {
+            String value = redis.opsForValue().get(KEY_PREFIX + userId);
+            return value != null ? Long.parseLong(value) : NOT_REVOKED;
+        } catch (Exception ex) {
+            log.warn("Token revocation lookup failed for user {}: {}", userId, ex.getMessage());
+            return null;
+        }
+    }
+}
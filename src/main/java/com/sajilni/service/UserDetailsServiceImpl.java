@@ -1,26 +1,26 @@
 package com.sajilni.service;
 
-import com.sajilni.entity.UserEntity;
-import com.sajilni.repository.UserRepository;
+import com.sajilni.cache.CachedUser;
+import com.sajilni.cache.UserAuthCache;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.stereotype.Service;
 import java.util.Collections;
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
-    private final UserRepository users;
+    private final UserAuthCache userCache;
 
-    public UserDetailsServiceImpl(UserRepository users) {
-        this.users = users;
+    public UserDetailsServiceImpl(UserAuthCache userCache) {
+        this.userCache = userCache;
     }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        UserEntity userEntity = users.findByEmail(email.toLowerCase())
+        CachedUser user = userCache.getWithCredentials(email)
                 .orElseThrow(() -> new UsernameNotFoundException("UserEntity not found"));
-        boolean enabled = userEntity.isEnabled();
+        boolean enabled = user.enabled();
         return org.springframework.security.core.userdetails.User
-                .withUsername(userEntity.getEmail())
-                .password(userEntity.getPasswordHash())
+                .withUsername(user.email())
+                .password(user.passwordHash())
                 .accountExpired(false)
                 .accountLocked(false)
                 .credentialsExpired(false)
@@ -1,5 +1,7 @@
 package com.sajilni.service;
 
+import com.sajilni.cache.CachedUser;
+import com.sajilni.cache.UserAuthCache;
 import com.sajilni.domain.request.RegisterReq;
 import com.sajilni.entity.DeviceInfoEntity;
 import com.sajilni.entity.UserEntity;
@@ -7,44 +9,75 @@ import com.sajilni.repository.DeviceInfoRepository;
 import com.sajilni.repository.UserRepository;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
+import java.time.Instant;
+import java.util.function.Function;
+
 @Service
 public class UserService {
     private final UserRepository users;
     private final DeviceInfoRepository devices;
     private final PasswordEncoder encoder;
+    private final UserAuthCache userCache;
+    private final MailService mailService;
+    private final TransactionTemplate transactionTemplate;
 
-    public UserService(UserRepository users, DeviceInfoRepository devices, PasswordEncoder encoder) {
+    public UserService(UserRepository users, DeviceInfoRepository devices, PasswordEncoder encoder,
+                       UserAuthCache userCache, MailService mailService,
+                       PlatformTransactionManager transactionManager) {
         this.users = users;
         this.devices = devices;
         this.encoder = encoder;
+        this.userCache = userCache;
+        this.mailService = mailService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    @Transactional
-    public UserEntity createUser(RegisterReq registerReq) {
+    /**
+     * Create a disabled user. The password is hashed before any transaction starts, so no
+     * pooled connection is held during the hash; only the inserts run in a transaction, which
+     * has committed by the time this returns. Must not be called inside an existing transaction.
+     *
+     * @param inTransaction runs inside the insert transaction once the user row exists (issuing
+     *                      the OTP, writing its outbox email); its result is returned, and if it
+     *                      throws the user is not created
+     */
+    public <T> T createUser(RegisterReq registerReq, Function<UserEntity, T> inTransaction) {
         if (!registerReq.getPassword().equals(registerReq.getConfirmPassword())) {
             throw new IllegalArgumentException("Passwords do not match");
         }
-        if (users.existsByEmail(registerReq.getEmail())) {
+        String email = registerReq.getEmail().toLowerCase();
+        // Cheap early exit so duplicates never pay for a hash; the insert itself is authoritative
+        if (users.existsByEmail(email)) {
             throw new IllegalStateException("user.exists");
         }
 
-        UserEntity u = new UserEntity();
-        u.setFirstName(registerReq.getFirstName());
-        u.setLastName(registerReq.getLastName());
-        u.setEmail(registerReq.getEmail().toLowerCase());
-        u.setPasswordHash(encoder.encode(registerReq.getPassword()));
-        u.setEnabled(false);
+        String passwordHash = encoder.encode(registerReq.getPassword());
+        return transactionTemplate.execute(status -> inTransaction.apply(insertUser(registerReq, email, passwordHash)));
+    }
+
+    /**
+     * Single {@code INSERT ... ON CONFLICT DO NOTHING}: a concurrent duplicate loses the race
+     * on {@code uk_user_email} and surfaces as {@code user.exists}, not a constraint violation.
+     */
+    private UserEntity insertUser(RegisterReq registerReq, String email, String passwordHash) {
+        Instant now = Instant.now();
+        Long id = users.insertIfAbsent(registerReq.getFirstName(), registerReq.getLastName(),
+                        email, passwordHash, now)
+                .orElseThrow(() -> new IllegalStateException("user.exists"));
 
-        // Save the user first
-        u = users.save(u);
+        UserEntity u = new UserEntity(id, registerReq.getFirstName(), registerReq.getLastName(),
+                email, passwordHash, false, now, now);
+        userCache.invalidate(email);
 
         // Save device info if provided
         if (registerReq.getPlatform() != null || registerReq.getModel() != null || registerReq.getOsName() != null) {
             DeviceInfoEntity d = new DeviceInfoEntity();
-            d.setUserEntity(u);
+            d.setUserEntity(users.getReferenceById(id));
             d.setPlatform(registerReq.getPlatform());
             d.setSerialNumber(registerReq.getSerialNumber());
             d.setModel(registerReq.getModel());
@@ -63,6 +96,9 @@ public class UserService {
         if (!u.isEnabled()) {
             u.setEnabled(true);
             u = users.save(u);
+            userCache.invalidate(u.getEmail());
+            // Committed together with the enable, delivered by the outbox relay
+            mailService.queueWelcomeEmail(u.getEmail(), u.getFirstName());
         }
         return u;
     }
@@ -71,4 +107,10 @@ public class UserService {
         return users.findByEmail(email.toLowerCase())
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
     }
-}
\ No newline at end of file
+
+    /** Auth projection of the user, served from the near-cache when possible. */
+    public CachedUser findAuthByEmailOrThrow(String email) {
+        return userCache.get(email)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.sajilni.service;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+
+/**
+ * Claims of a JWT whose signature and issuer have already been checked by {@link JwtService}.
+ * Callers read everything they need from here instead of re-parsing the raw token.
+ */
+public record VerifiedToken(
+        String email,
+        Long userId,
+        String tokenType,
+        Boolean enabled,
+        Instant issuedAt,
+        Instant expiresAt
+) {
+    /**
+     * Issue time in epoch milliseconds. The registered {@code iat} claim only has second
+     * precision, which is too coarse to order a login against a logout in the same second.
+     */
+    static final String ISSUED_AT_MS_CLAIM = "iatMs";
+
+    static VerifiedToken from(Claims claims) {
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get("userId", Long.class),
+                claims.get("tokenType", String.class),
+                claims.get("enabled", Boolean.class),
+                issuedAt(claims),
+                claims.getExpiration() != null ? claims.getExpiration().toInstant() : null
+        );
+    }
+
+    private static Instant issuedAt(Claims claims) {
+        Long issuedAtMs = claims.get(ISSUED_AT_MS_CLAIM, Long.class);
+        if (issuedAtMs != null) {
+            return Instant.ofEpochMilli(issuedAtMs);
+        }
+        return claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null;
+    }
+
+    public boolean isAccessToken() {
+        return "access".equals(tokenType);
+    }
+
+    public boolean isRefreshToken() {
+        return "refresh".equals(tokenType);
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !now.isBefore(expiresAt);
+    }
+}
@@ -0,0 +1,185 @@
+package com.sajilni.service.expiry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared expiry scheduler for in-memory state (OTP challenges, login lockouts, ...).
+ * <p>
+ * Callers register an action with the instant their entry becomes stale; the action runs on
+ * the wheel thread within one tick of that instant. Registration is lock-free (timers are
+ * queued and placed into the {@link HierarchicalTimingWheel} by the wheel thread), so request
+ * threads never contend on the wheel. Actions must be short and non-blocking, typically a
+ * conditional {@code Map.remove}.
+ * <p>
+ * {@link Timeout#cancel()} queues the timer for the wheel thread, which unlinks it on the next
+ * tick, so a cancelled timer and everything its action captures become garbage within a tick
+ * rather than at its deadline. Owners of bounded maps should cancel an entry's timer when the
+ * entry is evicted or replaced, so the wheel never holds more timers than there are live entries.
+ * <p>
+ * Metrics: {@code expiry.wheel.lag} (how far the wheel runs behind wall-clock, ms),
+ * {@code expiry.wheel.backlog} (registered timers not yet fired) and
+ * {@code expiry.wheel.expired} (actions run).
+ */
+@Slf4j
+@Service
+public class ExpiryService {
+    private static final int WHEEL_BITS = 6;   // 64 slots per level
+    private static final int WHEEL_LEVELS = 4; // 64^4 ticks: ~194 days at 1s ticks
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final HierarchicalTimingWheel wheel;
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> cancellations = new ConcurrentLinkedQueue<>();
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final Counter expiredCounter;
+    private final ScheduledExecutorService ticker;
+
+    public ExpiryService(MeterRegistry meterRegistry,
+                         @Value("${app.expiry.tick:1s}") Duration tick) {
+        this.tickMillis = Math.max(1, tick.toMillis());
+        this.startMillis = System.currentTimeMillis();
+        this.wheel = new HierarchicalTimingWheel(WHEEL_BITS, WHEEL_LEVELS, 0);
+
+        Gauge.builder("expiry.wheel.lag", lagMillis, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .description("How far the expiry wheel runs behind wall-clock time")
+                .register(meterRegistry);
+        Gauge.builder("expiry.wheel.backlog", backlog, AtomicLong::get)
+                .description("Registered expiry timers that have not fired yet")
+                .register(meterRegistry);
+        this.expiredCounter = Counter.builder("expiry.wheel.expired")
+                .description("Expiry actions executed")
+                .register(meterRegistry);
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "expiry-wheel");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run {@code action} once {@code delay} has elapsed (rounded up to the next tick).
+     */
+    public Timeout schedule(Duration delay, Runnable action) {
+        long deadlineMillis = System.currentTimeMillis() + Math.max(0, delay.toMillis());
+        long deadlineTick = ceilDiv(deadlineMillis - startMillis, tickMillis);
+        Timeout timeout = new Timeout(deadlineTick, action, cancellations);
+        backlog.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    public long getLagMillis() {
+        return lagMillis.get();
+    }
+
+    private void tick() {
+        try {
+            long elapsedTicks = (System.currentTimeMillis() - startMillis) / tickMillis;
+
+            Timeout timeout;
+            while ((timeout = pending.poll()) != null) {
+                if (timeout.cancelled) {
+                    backlog.decrementAndGet();
+                } else {
+                    wheel.add(timeout, this::fire);
+                }
+            }
+            // Timers still in the pending queue were skipped above; only placed ones are unlinked
+            while ((timeout = cancellations.poll()) != null) {
+                if (wheel.remove(timeout)) {
+                    backlog.decrementAndGet();
+                }
+            }
+            while (wheel.currentTick() < elapsedTicks) {
+                wheel.advance(this::fire);
+            }
+
+            // Time between the latest processed tick falling due and its timers having fired
+            long behind = System.currentTimeMillis() - startMillis - wheel.currentTick() * tickMillis;
+            lagMillis.set(Math.max(0, behind));
+        } catch (Exception ex) {
+            // Never let an exception cancel the periodic task
+            log.error("Expiry wheel tick failed", ex);
+        }
+    }
+
+    private void fire(Timeout timeout) {
+        backlog.decrementAndGet();
+        if (timeout.cancelled) {
+            return;
+        }
+        try {
+            timeout.action.run();
+            expiredCounter.increment();
+        } catch (Exception ex) {
+            log.warn("Expiry action failed: {}", ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    /**
+     * Handle to a registered expiry. Also the wheel's list node: {@code bucket}, {@code prev}
+     * and {@code next} belong to the wheel thread.
+     */
+    public static final class Timeout {
+        private final long deadlineTick;
+        private final Runnable action;
+        private final Queue<Timeout> cancellations;
+        private volatile boolean cancelled;
+        HierarchicalTimingWheel.Bucket bucket;
+        Timeout prev;
+        Timeout next;
+
+        Timeout(long deadlineTick, Runnable action, Queue<Timeout> cancellations) {
+            this.deadlineTick = deadlineTick;
+            this.action = action;
+            this.cancellations = cancellations;
+        }
+
+        long deadlineTick() {
+            return deadlineTick;
+        }
+
+        /**
+         * Make the action a no-op and have the wheel unlink the timer on its next tick.
+         * Idempotent, and harmless after the timer has fired.
+         */
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                cancellations.add(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.sajilni.service.expiry;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel over abstract ticks.
+ * <p>
+ * Level {@code i} has {@code 2^bits} slots, each spanning {@code 2^(bits*i)} ticks. A timer is
+ * placed at the lowest level whose span covers its remaining delay; when a lower level wraps,
+ * the matching slot of the next level is cascaded down. Insert is O(1), and each timer is moved
+ * at most once per level before it fires. Deadlines beyond the top level are parked in the top
+ * level and re-placed on every cascade until they come into range.
+ * <p>
+ * Slots are intrusive doubly-linked lists threaded through the timers themselves, so
+ * {@link #remove} unlinks a cancelled timer in O(1) and nothing keeps it reachable afterwards.
+ * <p>
+ * Not thread-safe: owned by a single ticking thread (see {@link ExpiryService}).
+ */
+final class HierarchicalTimingWheel {
+    private final int bits;
+    private final int mask;
+    private final int levels;
+    private final Bucket[][] slots;
+    private long currentTick;
+
+    HierarchicalTimingWheel(int bits, int levels, long startTick) {
+        this.bits = bits;
+        this.mask = (1 << bits) - 1;
+        this.levels = levels;
+        this.slots = new Bucket[levels][1 << bits];
+        for (int level = 0; level < levels; level++) {
+            for (int slot = 0; slot <= mask; slot++) {
+                slots[level][slot] = new Bucket();
+            }
+        }
+        this.currentTick = startTick;
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Place a timer, or hand it straight to {@code expired} if it is already due.
+     */
+    void add(ExpiryService.Timeout timeout, Consumer<ExpiryService.Timeout> expired) {
+        long deadline = timeout.deadlineTick();
+        long delay = deadline - currentTick;
+        if (delay <= 0) {
+            expired.accept(timeout);
+            return;
+        }
+
+        for (int level = 0; level < levels; level++) {
+            int shift = bits * level;
+            if (level == levels - 1 || (delay >>> shift) <= mask) {
+                long target = level == levels - 1 && (delay >>> shift) > mask
+                        ? currentTick + ((long) mask << shift) // beyond range: park at the far end
+                        : deadline;
+                slots[level][(int) ((target >>> shift) & mask)].add(timeout);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Move the wheel forward by one tick, cascading higher levels as lower ones wrap, and
+     * hand every timer that falls due in the new tick to {@code expired}.
+     */
+    void advance(Consumer<ExpiryService.Timeout> expired) {
+        currentTick++;
+
+        // Find the highest level whose lower levels all wrapped on this tick, then cascade
+        // top-down so timers moved from level N can still be cascaded out of level N-1.
+        int highest = 0;
+        while (highest + 1 < levels && (currentTick & ((1L << (bits * (highest + 1))) - 1)) == 0) {
+            highest++;
+        }
+        for (int level = highest; level >= 1; level--) {
+            int shift = bits * level;
+            // Detach the whole slot first: re-placed timers may land in this same slot again
+            ExpiryService.Timeout timeout = slots[level][(int) ((currentTick >>> shift) & mask)].detach();
+            while (timeout != null) {
+                ExpiryService.Timeout next = timeout.next;
+                timeout.next = null;
+                add(timeout, expired);
+                timeout = next;
+            }
+        }
+
+        Bucket due = slots[0][(int) (currentTick & mask)];
+        ExpiryService.Timeout timeout;
+        while ((timeout = due.poll()) != null) {
+            expired.accept(timeout);
+        }
+    }
+
+    /**
+     * Unlink a timer that has not fired yet.
+     *
+     * @return false if the timer is not in the wheel (already fired, removed or never added)
+     */
+    boolean remove(ExpiryService.Timeout timeout) {
+        Bucket bucket = timeout.bucket;
+        if (bucket == null) {
+            return false;
+        }
+        bucket.unlink(timeout);
+        return true;
+    }
+
+    /** One wheel slot; every timer in it points back here through {@code Timeout.bucket}. */
+    static final class Bucket {
+        private ExpiryService.Timeout head;
+        private ExpiryService.Timeout tail;
+
+        void add(ExpiryService.Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        ExpiryService.Timeout poll() {
+            ExpiryService.Timeout timeout = head;
+            if (timeout != null) {
+                unlink(timeout);
+            }
+            return timeout;
+        }
+
+        /** Empty the slot and return its former head; the timers stay chained through {@code next}. */
+        ExpiryService.Timeout detach() {
+            ExpiryService.Timeout first = head;
+            for (ExpiryService.Timeout t = first; t != null; t = t.next) {
+                t.bucket = null;
+                t.prev = null;
+            }
+            head = null;
+            tail = null;
+            return first;
+        }
+
+        void unlink(ExpiryService.Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+}
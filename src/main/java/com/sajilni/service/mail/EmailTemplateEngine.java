@@ -0,0 +1,217 @@
+package com.sajilni.service.mail;
+
+import jakarta.mail.internet.MimeUtility;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders the HTML emails in {@code templates/email/}.
+ * <p>
+ * A template is compiled once per language: every {@code {{name}}} that refers to copy in
+ * {@code email[_lang].properties} or to an app setting ({@code appName}, {@code website},
+ * {@code supportEmail}) is inlined, and what is left is split into literal segments and value
+ * slots. The subject is fixed per language, so it is MIME-encoded at compile time as well.
+ * Rendering appends literals and HTML-escaped values into a reused per-thread buffer; the only
+ * per-send allocation is the resulting string. {@code sentAt} is filled in with the language's
+ * {@code date.pattern} unless the caller supplies it.
+ * <p>
+ * Languages without a bundle fall back to the default (English) copy.
+ */
+@Slf4j
+@Component
+public class EmailTemplateEngine {
+    private static final String LOCATION = "templates/email/";
+    private static final String BUNDLE = "email";
+    private static final Pattern SLOT = Pattern.compile("\\{\\{([\\w.]+)}}");
+    private static final int MAX_EXPANSION_DEPTH = 4;
+    private static final int INITIAL_BUFFER = 16 * 1024;
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final Map<String, String> settings;
+    private final Set<String> languages = new HashSet<>();
+    private final Map<String, CompiledTemplate> compiled = new ConcurrentHashMap<>();
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_BUFFER));
+
+    public EmailTemplateEngine(@Value("${app.name:Sajilni}") String appName,
+                               @Value("${app.website:https://sajilni.com}") String website,
+                               @Value("${app.support.email:support@sajilni.com}") String supportEmail) {
+        this.settings = Map.of("appName", appName, "website", website, "supportEmail", supportEmail);
+        try {
+            for (Resource bundle : new PathMatchingResourcePatternResolver()
+                    .getResources("classpath:" + LOCATION + BUNDLE + "_*.properties")) {
+                String file = bundle.getFilename();
+                languages.add(file.substring(BUNDLE.length() + 1, file.length() - ".properties".length()));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot list email bundles", ex);
+        }
+        log.info("Email templates available in default language plus {}", languages);
+    }
+
+    /** A rendered email: the pre-encoded Subject header value and the HTML body. */
+    public record RenderedEmail(String encodedSubject, String html) {}
+
+    /**
+     * Render template {@code name} ({@code templates/email/<name>.html}) for {@code locale}.
+     * Missing values render as empty.
+     */
+    public RenderedEmail render(String name, Locale locale, Map<String, String> values) {
+        String language = locale != null && languages.contains(locale.getLanguage()) ? locale.getLanguage() : "";
+        CompiledTemplate template = compiled.computeIfAbsent(name + '_' + language, key -> compile(name, language));
+
+        StringBuilder buffer = buffers.get();
+        String html = template.render(values, buffer);
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            buffers.remove();
+        }
+        return new RenderedEmail(template.encodedSubject, html);
+    }
+
+    private CompiledTemplate compile(String name, String language) {
+        Map<String, String> constants = new HashMap<>(settings);
+        loadBundle(BUNDLE + ".properties", constants);
+        if (!language.isEmpty()) {
+            loadBundle(BUNDLE + "_" + language + ".properties", constants);
+        }
+
+        String subject = expand(constants.getOrDefault(name + ".subject", ""), constants, 0);
+        if (SLOT.matcher(subject).find()) {
+            throw new IllegalStateException("Subject of email template '" + name + "' must not use per-message values");
+        }
+
+        String source = expand(read(LOCATION + name + ".html"), constants, 0);
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        Matcher matcher = SLOT.matcher(source);
+        int last = 0;
+        while (matcher.find()) {
+            literals.add(source.substring(last, matcher.start()));
+            slots.add(matcher.group(1));
+            last = matcher.end();
+        }
+        literals.add(source.substring(last));
+
+        Locale locale = language.isEmpty() ? Locale.ENGLISH : Locale.forLanguageTag(language);
+        DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern(
+                constants.getOrDefault("date.pattern", "yyyy-MM-dd HH:mm"), locale);
+        log.debug("Compiled email template {} ({}): {} slots", name, language.isEmpty() ? "default" : language, slots.size());
+        return new CompiledTemplate(literals.toArray(String[]::new), slots.toArray(String[]::new),
+                encodeSubject(subject), dateFormat, source.length());
+    }
+
+    /** Inline every {@code {{name}}} found in {@code constants}; leave the rest for render time. */
+    private static String expand(String text, Map<String, String> constants, int depth) {
+        if (depth > MAX_EXPANSION_DEPTH) {
+            throw new IllegalStateException("Email copy nests too deeply: " + text);
+        }
+        Matcher matcher = SLOT.matcher(text);
+        StringBuilder out = new StringBuilder(text.length());
+        while (matcher.find()) {
+            String value = constants.get(matcher.group(1));
+            String replacement = value != null ? expand(value, constants, depth + 1) : matcher.group();
+            matcher.appendReplacement(out, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(out);
+        return out.toString();
+    }
+
+    private static void loadBundle(String file, Map<String, String> into) {
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new ClassPathResource(LOCATION + file).getInputStream(),
+                StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read email bundle " + file, ex);
+        }
+        properties.forEach((key, value) -> into.put((String) key, (String) value));
+    }
+
+    private static String read(String path) {
+        try {
+            return StreamUtils.copyToString(new ClassPathResource(path).getInputStream(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read email template " + path, ex);
+        }
+    }
+
+    private static String encodeSubject(String subject) {
+        try {
+            return MimeUtility.fold(9, MimeUtility.encodeText(subject, StandardCharsets.UTF_8.name(), "B"));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static final class CompiledTemplate {
+        private final String[] literals;
+        private final String[] slots;
+        private final String encodedSubject;
+        private final DateTimeFormatter dateFormat;
+        private final int estimatedLength;
+
+        CompiledTemplate(String[] literals, String[] slots, String encodedSubject,
+                         DateTimeFormatter dateFormat, int estimatedLength) {
+            this.literals = literals;
+            this.slots = slots;
+            this.encodedSubject = encodedSubject;
+            this.dateFormat = dateFormat;
+            this.estimatedLength = estimatedLength;
+        }
+
+        String render(Map<String, String> values, StringBuilder out) {
+            out.setLength(0);
+            out.ensureCapacity(estimatedLength + 256);
+            out.append(literals[0]);
+            for (int i = 0; i < slots.length; i++) {
+                String value = values.get(slots[i]);
+                if (value == null && "sentAt".equals(slots[i])) {
+                    value = LocalDateTime.now().format(dateFormat);
+                }
+                appendEscaped(value, out);
+                out.append(literals[i + 1]);
+            }
+            return out.toString();
+        }
+
+        private static void appendEscaped(String value, StringBuilder out) {
+            if (value == null) {
+                return;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '&' -> out.append("&amp;");
+                    case '<' -> out.append("&lt;");
+                    case '>' -> out.append("&gt;");
+                    case '"' -> out.append("&quot;");
+                    case '\'' -> out.append("&#39;");
+                    default -> out.append(c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.sajilni.service.mail;
+
+import com.sajilni.exception.BusinessException;
+import com.sajilni.service.expiry.ExpiryService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Sends email off the request threads.
+ * <p>
+ * Tasks go into a bounded in-memory queue drained by {@code workers} threads (virtual threads on
+ * a Java 21+ runtime, daemon platform threads otherwise), so request latency no longer depends
+ * on SMTP. Each worker takes up to {@code batch-size} queued tasks at once and sends them over
+ * one {@link SmtpTransportPool} connection. A failed send is retried up to {@code max-attempts}
+ * times with exponential backoff, timed on the {@link ExpiryService} wheel. When the queue is
+ * full the {@link OverflowPolicy} decides what gives. The queue is not persistent: tasks still
+ * queued at shutdown after {@code shutdown-timeout} are lost.
+ * <p>
+ * {@link MailTask#latestOnly latest-only} tasks are coalesced per recipient and type: queueing
+ * a newer one removes the older one from the queue, and a worker skips a task that has been
+ * replaced since it was taken, so during a resend storm only the newest OTP goes out. Only a
+ * send already in progress cannot be recalled.
+ * <p>
+ * Each task's {@link MailTask.Listener} hears how it ended. Callbacks run outside the retried
+ * send, so a failing callback never causes a message to be sent twice.
+ * <p>
+ * Metrics: {@code mail.queue.size}, {@code mail.queue.wait}, {@code mail.send.time} and
+ * {@code mail.dispatch} tagged by {@code type} and {@code outcome}
+ * (sent, retried, failed, dropped, rejected, superseded).
+ */
+@Slf4j
+@Component
+public class MailDispatcher {
+
+    public enum OverflowPolicy {
+        /** Fail the caller with a 503 ({@code email.queue.full}). */
+        REJECT,
+        /** Discard the new task. */
+        DROP_NEWEST,
+        /** Discard the task that has waited longest; for OTPs it is the most likely stale. */
+        DROP_OLDEST,
+        /** Send on the calling thread: backpressure at the cost of request latency. */
+        CALLER_RUNS
+    }
+
+    private final LinkedBlockingDeque<MailTask> queue;
+    // Newest queued or in-flight latest-only task per recipient and type
+    private final ConcurrentHashMap<String, MailTask> latest = new ConcurrentHashMap<>();
+    private final SmtpTransportPool transportPool;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration shutdownTimeout;
+    private final ExpiryService expiryService;
+    private final MeterRegistry meterRegistry;
+    private final Timer queueWait;
+    private final Timer sendTime;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean closed;
+
+    public MailDispatcher(ExpiryService expiryService,
+                          SmtpTransportPool transportPool,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.mail.dispatch.queue-capacity:1000}") int queueCapacity,
+                          @Value("${app.mail.dispatch.workers:4}") int workerCount,
+                          @Value("${app.mail.dispatch.batch-size:20}") int batchSize,
+                          @Value("${app.mail.dispatch.virtual-threads:true}") boolean virtualThreads,
+                          @Value("${app.mail.dispatch.max-attempts:3}") int maxAttempts,
+                          @Value("${app.mail.dispatch.initial-backoff:2s}") Duration initialBackoff,
+                          @Value("${app.mail.dispatch.overflow:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+                          @Value("${app.mail.dispatch.shutdown-timeout:10s}") Duration shutdownTimeout) {
+        this.queue = new LinkedBlockingDeque<>(Math.max(1, queueCapacity));
+        this.transportPool = transportPool;
+        this.batchSize = Math.max(1, batchSize);
+        this.overflowPolicy = overflowPolicy;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoff = initialBackoff;
+        this.shutdownTimeout = shutdownTimeout;
+        this.expiryService = expiryService;
+        this.meterRegistry = meterRegistry;
+
+        this.queueWait = Timer.builder("mail.queue.wait")
+                .description("Time an email waited in the dispatch queue")
+                .register(meterRegistry);
+        this.sendTime = Timer.builder("mail.send.time")
+                .description("Time spent in one SMTP send attempt")
+                .register(meterRegistry);
+        Gauge.builder("mail.queue.size", queue, LinkedBlockingDeque::size)
+                .description("Emails waiting for a mail worker")
+                .register(meterRegistry);
+
+        ThreadFactory factory = virtualThreads ? virtualThreadFactory() : null;
+        boolean virtual = factory != null;
+        if (!virtual) {
+            AtomicInteger sequence = new AtomicInteger();
+            factory = r -> {
+                Thread t = new Thread(r, "mail-worker-" + sequence.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+        }
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread worker = factory.newThread(this::work);
+            workers.add(worker);
+            worker.start();
+        }
+        log.info("Mail dispatcher: {} {} workers, queue capacity {}, overflow {}",
+                workers.size(), virtual ? "virtual" : "platform", queueCapacity, overflowPolicy);
+    }
+
+    /**
+     * Queue {@code task} for sending.
+     *
+     * @throws BusinessException 503 {@code email.queue.full} if the queue is full and the
+     *                           policy is {@link OverflowPolicy#REJECT}
+     */
+    public void submit(MailTask task) {
+        if (closed) {
+            record(task, "dropped");
+            log.warn("Mail dispatcher closed; dropping {} email to {}", task.type(), task.recipient());
+            notify(task, "finished", MailTask.Listener::finished);
+            return;
+        }
+        if (task.latestOnly()) {
+            MailTask previous = latest.put(task.coalesceKey(), task);
+            if (previous != null && queue.remove(previous)) {
+                supersede(previous);
+            }
+        }
+        if (queue.offerLast(task)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case REJECT -> {
+                forget(task);
+                record(task, "rejected");
+                notify(task, "finished", MailTask.Listener::finished);
+                throw new BusinessException("email.queue.full", "Email service is busy, please try again later",
+                        HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            case DROP_NEWEST -> drop(task);
+            case DROP_OLDEST -> {
+                MailTask oldest = queue.pollFirst();
+                if (oldest != null) {
+                    drop(oldest);
+                }
+                if (!queue.offerLast(task)) {
+                    drop(task);
+                }
+            }
+            case CALLER_RUNS -> send(task);
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getRemainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    /**
+     * Take whatever is queued, up to {@code batch-size} tasks, and send it over one pooled SMTP
+     * connection.
+     */
+    private void work() {
+        List<MailTask> batch = new ArrayList<>(batchSize);
+        while (true) {
+            MailTask first;
+            try {
+                first = queue.pollFirst(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            if (first == null) {
+                if (closed) {
+                    return;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            try {
+                transportPool.inBatch(() -> batch.forEach(this::send));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(MailTask task) {
+        // Claim the task; failing that, a newer one for the same recipient was queued meanwhile
+        if (task.latestOnly() && !latest.remove(task.coalesceKey(), task)) {
+            supersede(task);
+            return;
+        }
+        queueWait.record(System.nanoTime() - task.enqueuedNanos(), TimeUnit.NANOSECONDS);
+        long start = System.nanoTime();
+        try {
+            task.send().run();
+        } catch (RuntimeException ex) {
+            retryOrFail(task, ex);
+            return;
+        } finally {
+            sendTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        record(task, "sent");
+        notify(task, "sent", MailTask.Listener::sent);
+        notify(task, "finished", MailTask.Listener::finished);
+    }
+
+    private void retryOrFail(MailTask task, RuntimeException ex) {
+        if (task.attempt() < maxAttempts && !closed) {
+            MailTask retry = task.nextAttempt();
+            if (task.latestOnly() && latest.putIfAbsent(task.coalesceKey(), retry) != null) {
+                // A newer task is already queued; retrying this one would only send a stale message
+                supersede(task);
+                return;
+            }
+            Duration backoff = initialBackoff.multipliedBy(1L << (task.attempt() - 1));
+            record(task, "retried");
+            log.warn("Sending {} email to {} failed (attempt {}/{}), retrying in {}: {}",
+                    task.type(), task.recipient(), task.attempt(), maxAttempts, backoff, ex.getMessage());
+            expiryService.schedule(backoff, () -> requeue(retry));
+        } else {
+            record(task, "failed");
+            log.error("Giving up on {} email to {} after {} attempt(s)", task.type(), task.recipient(),
+                    task.attempt(), ex);
+            notify(task, "finished", MailTask.Listener::finished);
+        }
+    }
+
+    /** Runs on the wheel thread, so it never blocks or sends inline. */
+    private void requeue(MailTask task) {
+        if (closed || !queue.offerLast(task)) {
+            drop(task);
+        }
+    }
+
+    private void drop(MailTask task) {
+        forget(task);
+        record(task, "dropped");
+        log.warn("Mail queue full; dropped {} email to {}", task.type(), task.recipient());
+        notify(task, "finished", MailTask.Listener::finished);
+    }
+
+    private void supersede(MailTask task) {
+        record(task, "superseded");
+        log.debug("Skipped {} email to {}: superseded by a newer one", task.type(), task.recipient());
+        notify(task, "superseded", MailTask.Listener::superseded);
+        notify(task, "finished", MailTask.Listener::finished);
+    }
+
+    private void notify(MailTask task, String callback, Consumer<MailTask.Listener> call) {
+        if (task.listener() == null) {
+            return;
+        }
+        try {
+            call.accept(task.listener());
+        } catch (RuntimeException ex) {
+            log.warn("The {} callback for {} email to {} failed: {}", callback, task.type(), task.recipient(),
+                    ex.getMessage());
+        }
+    }
+
+    private void forget(MailTask task) {
+        if (task.latestOnly()) {
+            latest.remove(task.coalesceKey(), task);
+        }
+    }
+
+    private void record(MailTask task, String outcome) {
+        meterRegistry.counter("mail.dispatch", "type", task.type(), "outcome", outcome).increment();
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        closed = true;
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        for (Thread worker : workers) {
+            worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        }
+        workers.forEach(Thread::interrupt);
+        if (!queue.isEmpty()) {
+            log.warn("Mail dispatcher stopped with {} unsent email(s)", queue.size());
+        }
+    }
+
+    /**
+     * Virtual-thread factory when the runtime has them (looked up reflectively, the build
+     * targets Java 17), otherwise null.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "mail-worker-", 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException ex) {
+            log.debug("Virtual threads unavailable, using platform mail workers");
+            return null;
+        }
+    }
+}
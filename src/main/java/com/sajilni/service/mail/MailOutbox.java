@@ -0,0 +1,161 @@
+package com.sajilni.service.mail;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sajilni.entity.EmailOutboxEntity;
+import com.sajilni.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transactional email outbox ({@code email_outbox}).
+ * <p>
+ * {@link #enqueue} joins the caller's transaction, so an email exists exactly when the change
+ * that triggered it commits. {@link MailOutboxRelay} later claims due rows with
+ * {@code FOR UPDATE SKIP LOCKED} and pushes each claim's {@code next_attempt_at} one lease into
+ * the future; other nodes skip locked rows and then see the lease, so each row has a single
+ * owner at a time. The relay renews the lease of rows still waiting in its dispatch queue, so a
+ * slow queue does not hand them to another node. A node that dies mid-send leaves the lease to
+ * run out and the row is claimed again: delivery is at-least-once. Template values (the OTP code) are cleared once a row is
+ * sent, given up on or superseded.
+ * <p>
+ * Rows enqueued with {@code replacePending} retire any still-pending, unleased row of the same
+ * type for the same recipient, so an OTP that has not been claimed yet is never sent once a newer
+ * one exists. Rows under lease are left alone: they may already be sending, and the
+ * {@link MailDispatcher} coalesces and counts them itself. Each retired row is counted on
+ * {@code mail.dispatch} with outcome {@code superseded}, so every row is counted exactly once.
+ */
+@Slf4j
+@Service
+public class MailOutbox {
+    private static final TypeReference<Map<String, String>> PAYLOAD_TYPE = new TypeReference<>() {};
+
+    private final EmailOutboxRepository outbox;
+    private final ObjectMapper objectMapper;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final MeterRegistry meterRegistry;
+
+    public MailOutbox(EmailOutboxRepository outbox,
+                      ObjectMapper objectMapper,
+                      MeterRegistry meterRegistry,
+                      @Value("${app.mail.outbox.max-attempts:5}") int maxAttempts,
+                      @Value("${app.mail.outbox.lease:2m}") Duration lease) {
+        this.outbox = outbox;
+        this.objectMapper = objectMapper;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.lease = lease;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** A claimed row, detached from the persistence context. */
+    public record OutboxMail(Long id, String type, String recipient, Map<String, String> payload) {}
+
+    /**
+     * Record an email to be sent once the current transaction commits; without a surrounding
+     * transaction the row commits on its own.
+     *
+     * @param replacePending retire still-pending rows of the same type for this recipient
+     */
+    @Transactional
+    public void enqueue(String type, String recipient, Map<String, String> payload, boolean replacePending) {
+        Instant now = Instant.now();
+        if (replacePending) {
+            int superseded = outbox.supersedePending(type, recipient, now);
+            if (superseded > 0) {
+                meterRegistry.counter("mail.dispatch", "type", type, "outcome", "superseded").increment(superseded);
+            }
+        }
+        EmailOutboxEntity row = new EmailOutboxEntity();
+        row.setType(type);
+        row.setRecipient(recipient);
+        row.setPayload(writePayload(payload));
+        row.setStatus(EmailOutboxEntity.Status.PENDING);
+        row.setNextAttemptAt(now);
+        row.setCreatedAt(now);
+        outbox.save(row);
+    }
+
+    /**
+     * Claim up to {@code limit} due rows. Each claim counts as an attempt and leases the row for
+     * {@code lease} times the attempt number, which doubles as backoff between attempts; rows out
+     * of attempts, or whose payload cannot be read, are marked failed instead so they never block
+     * the claim.
+     */
+    @Transactional
+    public List<OutboxMail> claimDue(int limit) {
+        Instant now = Instant.now();
+        List<EmailOutboxEntity> rows = outbox.lockDue(now, limit);
+        List<OutboxMail> claimed = new ArrayList<>(rows.size());
+        for (EmailOutboxEntity row : rows) {
+            if (row.getAttempts() >= maxAttempts) {
+                row.setStatus(EmailOutboxEntity.Status.FAILED);
+                row.setPayload(null);
+                log.error("Giving up on outbox email {} ({}) to {} after {} attempts",
+                        row.getId(), row.getType(), row.getRecipient(), row.getAttempts());
+                continue;
+            }
+            Map<String, String> payload;
+            try {
+                payload = readPayload(row.getPayload());
+            } catch (IllegalStateException ex) {
+                row.setStatus(EmailOutboxEntity.Status.FAILED);
+                row.setPayload(null);
+                log.error("Giving up on outbox email {} ({}) to {}: {}",
+                        row.getId(), row.getType(), row.getRecipient(), ex.getMessage());
+                continue;
+            }
+            row.setAttempts(row.getAttempts() + 1);
+            row.setNextAttemptAt(now.plus(lease.multipliedBy(row.getAttempts())));
+            claimed.add(new OutboxMail(row.getId(), row.getType(), row.getRecipient(), payload));
+        }
+        return claimed;
+    }
+
+    /** Push the lease of still-pending {@code ids} one {@code lease} past now. */
+    public void renewLeases(Collection<Long> ids) {
+        if (!ids.isEmpty()) {
+            outbox.renewLeases(ids, Instant.now().plus(lease));
+        }
+    }
+
+    public void markSent(Long id) {
+        outbox.markSent(id, Instant.now());
+    }
+
+    public void markSuperseded(Long id) {
+        outbox.markSuperseded(id);
+    }
+
+    /** Delete sent and failed rows created before {@code before}. */
+    public int purgeCompletedBefore(Instant before) {
+        return outbox.deleteCompletedBefore(before);
+    }
+
+    private String writePayload(Map<String, String> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Outbox payload is not serializable", ex);
+        }
+    }
+
+    private Map<String, String> readPayload(String json) {
+        try {
+            return json == null ? Map.of() : objectMapper.readValue(json, PAYLOAD_TYPE);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Corrupt outbox payload", ex);
+        }
+    }
+}
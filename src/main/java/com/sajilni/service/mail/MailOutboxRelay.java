@@ -0,0 +1,153 @@
+package com.sajilni.service.mail;
+
+import com.sajilni.exception.BusinessException;
+import com.sajilni.service.MailService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Moves due {@link MailOutbox} rows onto the {@link MailDispatcher} in batches of at most
+ * {@code batch-size}, never claiming more than the dispatch queue has room for, and marks each
+ * row sent once its SMTP send succeeds. A row whose send keeps failing stays pending and is
+ * re-claimed when its lease runs out. Every node runs the relay; the outbox claim keeps them
+ * from picking up the same rows.
+ * <p>
+ * Rows this node has handed to the dispatcher and not yet finished are renewed every
+ * {@code lease-renewal}, however long the queue is, so another node cannot claim and resend
+ * them. Marking a row sent happens after, not inside, the retried send: if it fails the error
+ * is logged and the row is sent again once its lease runs out, which is the at-least-once case
+ * the outbox already accepts.
+ */
+@Slf4j
+@Component
+public class MailOutboxRelay {
+    private final MailOutbox outbox;
+    private final MailDispatcher dispatcher;
+    private final MailService mailService;
+    private final int batchSize;
+    private final Duration retention;
+    // Outbox ids queued or sending on this node, whose leases are renewed
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    public MailOutboxRelay(MailOutbox outbox,
+                           MailDispatcher dispatcher,
+                           MailService mailService,
+                           @Value("${app.mail.outbox.batch-size:100}") int batchSize,
+                           @Value("${app.mail.outbox.retention:7d}") Duration retention) {
+        this.outbox = outbox;
+        this.dispatcher = dispatcher;
+        this.mailService = mailService;
+        this.batchSize = Math.max(1, batchSize);
+        this.retention = retention;
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval:PT1S}")
+    public void relay() {
+        while (true) {
+            int limit = Math.min(batchSize, dispatcher.getRemainingCapacity());
+            if (limit <= 0) {
+                return;
+            }
+            List<MailOutbox.OutboxMail> claimed;
+            try {
+                claimed = outbox.claimDue(limit);
+            } catch (RuntimeException ex) {
+                log.warn("Mail outbox poll failed: {}", ex.getMessage());
+                return;
+            }
+            for (MailOutbox.OutboxMail mail : claimed) {
+                inFlight.add(mail.id());
+                try {
+                    dispatcher.submit(toTask(mail));
+                } catch (BusinessException ex) {
+                    // Queue full under REJECT: the row stays leased and is claimed again later
+                    log.debug("Mail queue full; outbox email {} deferred", mail.id());
+                }
+            }
+            // A short batch means the backlog is drained
+            if (claimed.size() < limit) {
+                return;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.lease-renewal:PT30S}")
+    public void renewLeases() {
+        if (inFlight.isEmpty()) {
+            return;
+        }
+        try {
+            outbox.renewLeases(List.copyOf(inFlight));
+        } catch (RuntimeException ex) {
+            log.warn("Renewing {} outbox leases failed: {}", inFlight.size(), ex.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.purge-interval:PT1H}")
+    public void purge() {
+        try {
+            int purged = outbox.purgeCompletedBefore(Instant.now().minus(retention));
+            if (purged > 0) {
+                log.debug("Purged {} completed outbox emails", purged);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Mail outbox purge failed: {}", ex.getMessage());
+        }
+    }
+
+    /** A newer OTP makes an unsent one useless, so OTP tasks are coalesced by the dispatcher. */
+    private MailTask toTask(MailOutbox.OutboxMail mail) {
+        MailTask.Listener listener = new RowListener(mail.id());
+        if (MailService.OTP.equals(mail.type())) {
+            return MailTask.latestOnly(mail.type(), mail.recipient(), () -> deliver(mail), listener);
+        }
+        return MailTask.of(mail.type(), mail.recipient(), () -> deliver(mail), listener);
+    }
+
+    private void deliver(MailOutbox.OutboxMail mail) {
+        Locale locale = Locale.forLanguageTag(mail.payload().getOrDefault("locale", ""));
+        switch (mail.type()) {
+            case MailService.OTP -> mailService.sendOtp(mail.recipient(), mail.payload().get("code"), locale);
+            case MailService.WELCOME -> mailService.sendWelcomeEmail(mail.recipient(), mail.payload().get("firstName"), locale);
+            default -> throw new IllegalArgumentException("Unknown outbox email type: " + mail.type());
+        }
+    }
+
+    /** Records the outcome on the row and stops renewing its lease. */
+    private final class RowListener implements MailTask.Listener {
+        private final Long id;
+
+        RowListener(Long id) {
+            this.id = id;
+        }
+
+        @Override
+        public void sent() {
+            try {
+                outbox.markSent(id);
+            } catch (RuntimeException ex) {
+                log.error("Outbox email {} was sent but could not be marked sent; it will be sent again: {}",
+                        id, ex.getMessage());
+            }
+        }
+
+        @Override
+        public void superseded() {
+            outbox.markSuperseded(id);
+        }
+
+        @Override
+        public void finished() {
+            inFlight.remove(id);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.sajilni.service.mail;
+
+/**
+ * One email waiting for the {@link MailDispatcher}. {@code send} performs the whole SMTP
+ * conversation and throws on failure; it may run more than once when retried.
+ *
+ * @param type          short label used in logs and metric tags ({@code otp}, {@code welcome})
+ * @param recipient     address the message goes to
+ * @param send          builds and sends the message
+ * @param latestOnly    whether a newer task of the same type for the same recipient replaces
+ *                      this one while it is still queued
+ * @param listener      told how the task ended; may be null
+ * @param attempt       1 for the first try
+ * @param enqueuedNanos {@link System#nanoTime()} when the task entered the queue
+ */
+public record MailTask(String type, String recipient, Runnable send, boolean latestOnly, Listener listener,
+                       int attempt, long enqueuedNanos) {
+
+    public static MailTask of(String type, String recipient, Runnable send, Listener listener) {
+        return new MailTask(type, recipient, send, false, listener, 1, System.nanoTime());
+    }
+
+    /** A task that only matters until a newer one for the same recipient and type is queued. */
+    public static MailTask latestOnly(String type, String recipient, Runnable send, Listener listener) {
+        return new MailTask(type, recipient, send, true, listener, 1, System.nanoTime());
+    }
+
+    String coalesceKey() {
+        return type + '|' + recipient;
+    }
+
+    MailTask nextAttempt() {
+        return new MailTask(type, recipient, send, latestOnly, listener, attempt + 1, System.nanoTime());
+    }
+
+    /**
+     * Outcome callbacks, run on the thread that decided the outcome and never retried. A
+     * failing callback is logged and does not change the outcome: in particular a send that
+     * succeeded is not sent again.
+     */
+    public interface Listener {
+        /** The message was handed to the SMTP server. */
+        default void sent() {
+        }
+
+        /** A newer task for the same recipient and type replaced this one before it was sent. */
+        default void superseded() {
+        }
+
+        /**
+         * The dispatcher is done with the task, whatever the outcome: sent, superseded, failed
+         * after its last attempt, dropped or rejected. Runs exactly once, after the callbacks above.
+         */
+        default void finished() {
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.sajilni.service.mail;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of connected, authenticated SMTP {@link Transport}s, so a send does not pay for
+ * connect, EHLO, STARTTLS and AUTH every time.
+ * <p>
+ * At most {@code max-connections} transports exist. Idle ones are reused most-recently-used
+ * first; one idle longer than {@code validate-after} is checked with {@code NOOP} (via
+ * {@link Transport#isConnected()}) before reuse, and one idle longer than {@code idle-timeout}
+ * is closed by the eviction sweep. A connection is retired after
+ * {@code max-messages-per-connection} messages, since servers cap messages per session, and is
+ * dropped on any send error.
+ * <p>
+ * {@link #inBatch} binds one connection to the calling thread for a run of sends; the
+ * {@link MailDispatcher} uses it to push each drained batch down a single session.
+ * With {@code enabled: false} every send goes through {@link JavaMailSenderImpl} as before.
+ * <p>
+ * Metrics: {@code mail.smtp.connections} (tagged {@code state}: idle, active),
+ * {@code mail.smtp.connects} and {@code mail.smtp.evicted}.
+ */
+@Slf4j
+@Component
+public class SmtpTransportPool {
+    private final JavaMailSenderImpl mailSender;
+    private final boolean enabled;
+    private final int maxMessagesPerConnection;
+    private final long idleTimeoutNanos;
+    private final long validateAfterNanos;
+    private final Duration borrowTimeout;
+    private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final ThreadLocal<Batch> currentBatch = new ThreadLocal<>();
+    private final Counter connects;
+    private final Counter evictions;
+    private volatile boolean closed;
+
+    public SmtpTransportPool(JavaMailSenderImpl mailSender,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.mail.pool.enabled:true}") boolean enabled,
+                             @Value("${app.mail.pool.max-connections:4}") int maxConnections,
+                             @Value("${app.mail.pool.max-messages-per-connection:100}") int maxMessagesPerConnection,
+                             @Value("${app.mail.pool.idle-timeout:30s}") Duration idleTimeout,
+                             @Value("${app.mail.pool.validate-after:5s}") Duration validateAfter,
+                             @Value("${app.mail.pool.borrow-timeout:10s}") Duration borrowTimeout) {
+        this.mailSender = mailSender;
+        this.enabled = enabled;
+        this.maxMessagesPerConnection = Math.max(1, maxMessagesPerConnection);
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.validateAfterNanos = validateAfter.toNanos();
+        this.borrowTimeout = borrowTimeout;
+        int connections = Math.max(1, maxConnections);
+        this.permits = new Semaphore(connections);
+
+        this.connects = Counter.builder("mail.smtp.connects")
+                .description("SMTP connections opened and authenticated")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("mail.smtp.evicted")
+                .description("Pooled SMTP connections closed (idle, stale, broken or retired)")
+                .register(meterRegistry);
+        Gauge.builder("mail.smtp.connections", idle, LinkedBlockingDeque::size)
+                .tag("state", "idle")
+                .description("Open SMTP connections")
+                .register(meterRegistry);
+        Gauge.builder("mail.smtp.connections", permits, p -> connections - p.availablePermits())
+                .tag("state", "active")
+                .description("Open SMTP connections")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Send {@code message}, on the connection bound by an enclosing {@link #inBatch} if any.
+     *
+     * @throws MailSendException if no connection could be obtained or the send failed
+     */
+    public void send(MimeMessage message) {
+        if (!enabled) {
+            mailSender.send(message);
+            return;
+        }
+        Batch batch = currentBatch.get();
+        if (batch != null) {
+            sendInBatch(batch, message);
+            return;
+        }
+        PooledTransport transport = borrow();
+        boolean healthy = false;
+        try {
+            deliver(transport, message);
+            healthy = true;
+        } finally {
+            release(transport, healthy);
+        }
+    }
+
+    /**
+     * Run {@code work} with every {@link #send} it makes on this thread sharing one pooled
+     * connection. A connection that fails mid-batch is dropped and the next send reconnects.
+     */
+    public void inBatch(Runnable work) {
+        if (!enabled || currentBatch.get() != null) {
+            work.run();
+            return;
+        }
+        Batch batch = new Batch();
+        currentBatch.set(batch);
+        try {
+            work.run();
+        } finally {
+            currentBatch.remove();
+            if (batch.transport != null) {
+                release(batch.transport, true);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.pool.eviction-interval:PT15S}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        // Most-recently-used sits at the head, so the stalest connections are at the tail
+        PooledTransport oldest;
+        while ((oldest = idle.peekLast()) != null && now - oldest.lastUsedNanos > idleTimeoutNanos) {
+            if (idle.removeLastOccurrence(oldest)) {
+                close(oldest);
+            }
+        }
+    }
+
+    private void sendInBatch(Batch batch, MimeMessage message) {
+        if (batch.transport == null) {
+            batch.transport = borrow();
+        }
+        try {
+            deliver(batch.transport, message);
+        } catch (RuntimeException ex) {
+            release(batch.transport, false);
+            batch.transport = null;
+            throw ex;
+        }
+        if (batch.transport.sent >= maxMessagesPerConnection) {
+            release(batch.transport, true);
+            batch.transport = null;
+        }
+    }
+
+    private PooledTransport borrow() {
+        try {
+            if (!permits.tryAcquire(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new MailSendException("No SMTP connection available within " + borrowTimeout);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Interrupted waiting for an SMTP connection");
+        }
+        try {
+            PooledTransport transport;
+            while ((transport = idle.pollFirst()) != null) {
+                if (isUsable(transport)) {
+                    return transport;
+                }
+                close(transport);
+            }
+            return connect();
+        } catch (RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    private void release(PooledTransport transport, boolean healthy) {
+        try {
+            if (healthy && !closed && transport.sent < maxMessagesPerConnection) {
+                transport.lastUsedNanos = System.nanoTime();
+                idle.offerFirst(transport);
+            } else {
+                close(transport);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isUsable(PooledTransport transport) {
+        long idleFor = System.nanoTime() - transport.lastUsedNanos;
+        if (idleFor > idleTimeoutNanos) {
+            return false;
+        }
+        // isConnected() issues a NOOP on SMTP, so only pay for it after a pause
+        return idleFor < validateAfterNanos || transport.transport.isConnected();
+    }
+
+    private PooledTransport connect() {
+        String protocol = mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp";
+        String username = mailSender.getUsername();
+        String password = mailSender.getPassword();
+        try {
+            Transport transport = mailSender.getSession().getTransport(protocol);
+            transport.connect(mailSender.getHost(), mailSender.getPort(),
+                    username == null || username.isEmpty() ? null : username,
+                    password == null || password.isEmpty() ? null : password);
+            connects.increment();
+            return new PooledTransport(transport);
+        } catch (MessagingException ex) {
+            throw new MailSendException("Could not connect to SMTP server " + mailSender.getHost(), ex);
+        }
+    }
+
+    private static void deliver(PooledTransport transport, MimeMessage message) {
+        try {
+            if (message.getSentDate() == null) {
+                message.setSentDate(new Date());
+            }
+            message.saveChanges();
+            transport.transport.sendMessage(message, message.getAllRecipients());
+            transport.sent++;
+        } catch (MessagingException ex) {
+            throw new MailSendException("SMTP send failed", ex);
+        }
+    }
+
+    private void close(PooledTransport transport) {
+        evictions.increment();
+        try {
+            transport.transport.close();
+        } catch (MessagingException ex) {
+            log.debug("Error closing SMTP connection: {}", ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        closed = true;
+        PooledTransport transport;
+        while ((transport = idle.pollFirst()) != null) {
+            close(transport);
+        }
+    }
+
+    private static final class PooledTransport {
+        private final Transport transport;
+        private long lastUsedNanos = System.nanoTime();
+        private int sent;
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+
+    /** Connection bound to one thread for the duration of {@link #inBatch}. */
+    private static final class Batch {
+        private PooledTransport transport;
+    }
+}
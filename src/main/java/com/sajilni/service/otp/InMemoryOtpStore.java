@@ -0,0 +1,241 @@
+package com.sajilni.service.otp;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.sajilni.service.expiry.ExpiryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-node OTP store for single-instance deployments.
+ * <p>
+ * Entries are removed by the {@link ExpiryService} wheel when they fall due rather than by a
+ * periodic full-map scan; reads still check expiry, so a late removal is never observable.
+ * Each entry carries its timer, which is cancelled when the entry is verified, replaced,
+ * cleared or evicted, so the wheel holds at most one timer per live entry.
+ * <p>
+ * Both maps are capped from {@code app.otp.memory-budget} (three quarters for challenges, the
+ * rest for generation counters) with Caffeine's W-TinyLFU eviction, so a flood of random emails
+ * evicts one-off entries instead of exhausting the heap. Evictions at the cap are counted as
+ * {@code otp.store.evicted.pressure}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.otp.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+
+    // Heap per entry from OtpStoreFootprintBenchmark: map node, key string, record, its
+    // LocalDateTimes and the wheel timer with its action
+    private static final long CHALLENGE_BYTES = 390;
+    private static final long GENERATION_BYTES = 320;
+
+    private final ConcurrentMap<String, OtpChallenge> otpStorage;
+    private final ConcurrentMap<String, GenerationAttempts> generationAttempts;
+    private final ExpiryService expiryService;
+
+    public InMemoryOtpStore(ExpiryService expiryService,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.otp.memory-budget:64MB}") DataSize memoryBudget) {
+        this.expiryService = expiryService;
+        long budget = memoryBudget.toBytes();
+        this.otpStorage = boundedMap(budget * 3 / 4 / CHALLENGE_BYTES, "challenges", meterRegistry);
+        this.generationAttempts = boundedMap(budget / 4 / GENERATION_BYTES, "generations", meterRegistry);
+    }
+
+    @Override
+    public void saveChallenge(String email, String code, int maxAttempts, Duration ttl) {
+        LocalDateTime now = LocalDateTime.now();
+        String key = buildKey(email);
+
+        // Attempts replace the record but keep its expiry and timer, so removal is keyed on expiry time
+        ExpiryService.Timeout expiry = expiryService.schedule(ttl, () -> otpStorage.computeIfPresent(key,
+                (k, current) -> LocalDateTime.now().isBefore(current.expiryTime()) ? current : null));
+        OtpChallenge previous = otpStorage.put(key,
+                new OtpChallenge(code, now.plus(ttl), 0, maxAttempts, now, State.PENDING, expiry));
+        if (previous != null) {
+            previous.expiry().cancel();
+        }
+    }
+
+    /**
+     * Apply one attempt as a single {@code compute}, so concurrent guesses are serialized
+     * per challenge and none of them can overwrite another's attempt count.
+     * <pre>
+     * PENDING --match--------------------> (removed)
+     * PENDING --mismatch, attempts < max-> PENDING
+     * PENDING --mismatch, attempts = max-> LOCKED
+     * any     --expired------------------> (removed)
+     * </pre>
+     */
+    @Override
+    public OtpVerification verify(String email, String code) {
+        OtpVerification[] outcome = new OtpVerification[1];
+        LocalDateTime now = LocalDateTime.now();
+
+        otpStorage.compute(buildKey(email), (key, challenge) -> {
+            if (challenge == null || now.isAfter(challenge.expiryTime())) {
+                outcome[0] = OtpVerification.notFound();
+                if (challenge != null) {
+                    challenge.expiry().cancel();
+                }
+                return null;
+            }
+            if (challenge.state() == State.LOCKED) {
+                outcome[0] = OtpVerification.lockedOut();
+                return challenge;
+            }
+
+            OtpChallenge attempted = challenge.withIncrementedAttempts();
+            if (challenge.code().equalsIgnoreCase(code)) {
+                outcome[0] = OtpVerification.verified(attempted.remainingAttempts());
+                challenge.expiry().cancel();
+                return null;
+            }
+            if (attempted.attemptCount() >= attempted.maxAttempts()) {
+                attempted = attempted.withState(State.LOCKED);
+            }
+            outcome[0] = OtpVerification.mismatch(attempted.remainingAttempts());
+            return attempted;
+        });
+
+        return outcome[0];
+    }
+
+    @Override
+    public int getRemainingAttempts(String email) {
+        OtpChallenge challenge = otpStorage.get(buildKey(email));
+
+        if (challenge == null || challenge.state() == State.LOCKED
+                || LocalDateTime.now().isAfter(challenge.expiryTime())) {
+            return 0;
+        }
+
+        return challenge.remainingAttempts();
+    }
+
+    @Override
+    public boolean hasValidChallenge(String email) {
+        OtpChallenge challenge = otpStorage.get(buildKey(email));
+
+        return challenge != null &&
+                challenge.state() == State.PENDING &&
+                LocalDateTime.now().isBefore(challenge.expiryTime());
+    }
+
+    @Override
+    public boolean tryRecordGeneration(String email, int limit, Duration window) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean[] recorded = new boolean[1];
+
+        generationAttempts.compute(email, (key, current) -> {
+            if (current == null || now.isAfter(current.resetTime())) {
+                recorded[0] = true;
+                if (current != null) {
+                    current.expiry().cancel();
+                }
+                return new GenerationAttempts(1, now.plus(window), scheduleGenerationExpiry(email, window));
+            }
+            if (current.count() >= limit) {
+                return current;
+            }
+            recorded[0] = true;
+            return new GenerationAttempts(current.count() + 1, current.resetTime(), current.expiry());
+        });
+
+        return recorded[0];
+    }
+
+    @Override
+    public void clearGenerationAttempts(String email) {
+        GenerationAttempts removed = generationAttempts.remove(email);
+        if (removed != null) {
+            removed.expiry().cancel();
+        }
+    }
+
+    @Override
+    public long size() {
+        return otpStorage.size();
+    }
+
+    @Override
+    public long generationAttemptsSize() {
+        return generationAttempts.size();
+    }
+
+    private ExpiryService.Timeout scheduleGenerationExpiry(String email, Duration window) {
+        return expiryService.schedule(window, () -> generationAttempts.computeIfPresent(email,
+                (k, current) -> LocalDateTime.now().isBefore(current.resetTime()) ? current : null));
+    }
+
+    private static <V extends Expiring> ConcurrentMap<String, V> boundedMap(long maximumSize, String name,
+                                                                           MeterRegistry meterRegistry) {
+        Counter evictions = Counter.builder("otp.store.evicted.pressure")
+                .description("OTP entries evicted because the store's memory budget was reached")
+                .tags("store", "memory", "map", name)
+                .register(meterRegistry);
+        return Caffeine.newBuilder()
+                .maximumSize(Math.max(1_000, maximumSize))
+                .<String, V>evictionListener((key, value, cause) -> {
+                    if (value != null) {
+                        value.expiry().cancel();
+                    }
+                    if (cause == RemovalCause.SIZE) {
+                        evictions.increment();
+                    }
+                })
+                .build()
+                .asMap();
+    }
+
+    private static String buildKey(String email) {
+        return "otp:" + email;
+    }
+
+    private enum State { PENDING, LOCKED }
+
+    private interface Expiring {
+        ExpiryService.Timeout expiry();
+    }
+
+    /**
+     * Immutable OTP challenge; every transition produces a new instance inside {@code compute}.
+     */
+    private record OtpChallenge(
+            String code,
+            LocalDateTime expiryTime,
+            int attemptCount,
+            int maxAttempts,
+            LocalDateTime createdAt,
+            State state,
+            ExpiryService.Timeout expiry
+    ) implements Expiring {
+        OtpChallenge withIncrementedAttempts() {
+            return new OtpChallenge(code, expiryTime, attemptCount + 1, maxAttempts, createdAt, state, expiry);
+        }
+
+        OtpChallenge withState(State state) {
+            return new OtpChallenge(code, expiryTime, attemptCount, maxAttempts, createdAt, state, expiry);
+        }
+
+        int remainingAttempts() {
+            return Math.max(0, maxAttempts - attemptCount);
+        }
+    }
+
+    /**
+     * Generation attempts tracking record
+     */
+    private record GenerationAttempts(
+            int count,
+            LocalDateTime resetTime,
+            ExpiryService.Timeout expiry
+    ) implements Expiring {}
+}
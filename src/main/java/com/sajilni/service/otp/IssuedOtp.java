@@ -0,0 +1,7 @@
+package com.sajilni.service.otp;
+
+/**
+ * A freshly generated OTP challenge: the code to send and how many attempts it allows.
+ */
+public record IssuedOtp(String code, int remainingAttempts) {
+}
@@ -0,0 +1,121 @@
+package com.sajilni.service.otp;
+
+import com.sajilni.domain.constants.Type;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OTP code generator backed by long-lived {@link SecureRandom}s.
+ * <p>
+ * A daemon thread keeps a queue of random byte blocks filled; request threads consume a block
+ * through a thread-local cursor and only fall back to drawing from a striped
+ * {@code SecureRandom} when the queue is momentarily empty. Consumed blocks are recycled to
+ * the refiller and overwritten before reuse, so no byte is ever handed out twice.
+ * <p>
+ * Bytes are mapped onto the alphabet with rejection sampling (bytes at or above the largest
+ * multiple of the alphabet size are discarded), so every symbol is equally likely.
+ */
+@Slf4j
+@Component
+public class OtpCodeGenerator {
+    private static final char[] DIGITS = "0123456789".toCharArray();
+    private static final char[] ALPHA = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final char[] ALPHANUMERIC = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int BUFFERED_BLOCKS = 16;
+
+    private final SecureRandom[] stripes;
+    private final int stripeMask;
+    private final BlockingQueue<byte[]> ready = new ArrayBlockingQueue<>(BUFFERED_BLOCKS);
+    private final BlockingQueue<byte[]> spare = new ArrayBlockingQueue<>(BUFFERED_BLOCKS);
+    private final ThreadLocal<Cursor> cursors = ThreadLocal.withInitial(Cursor::new);
+    private final Thread refiller;
+
+    public OtpCodeGenerator() {
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        this.stripes = new SecureRandom[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new SecureRandom();
+        }
+        this.stripeMask = stripeCount - 1;
+
+        for (int i = 0; i < BUFFERED_BLOCKS; i++) {
+            spare.add(new byte[BLOCK_SIZE]);
+        }
+        this.refiller = new Thread(this::refill, "otp-random-refill");
+        refiller.setDaemon(true);
+        refiller.start();
+    }
+
+    public String generate(int length, Type type) {
+        char[] alphabet = switch (type) {
+            case NUMERIC -> DIGITS;
+            case ALPHA -> ALPHA;
+            case ALPHANUMERIC -> ALPHANUMERIC;
+        };
+        int limit = 256 - (256 % alphabet.length);
+
+        Cursor cursor = cursors.get();
+        char[] code = new char[length];
+        for (int i = 0; i < length; ) {
+            int b = nextByte(cursor);
+            if (b < limit) {
+                code[i++] = alphabet[b % alphabet.length];
+            }
+        }
+        return new String(code);
+    }
+
+    private int nextByte(Cursor cursor) {
+        if (cursor.position == BLOCK_SIZE) {
+            byte[] used = cursor.block;
+            byte[] next = ready.poll();
+            if (next == null) {
+                // Refiller fell behind: fill this thread's block directly from a striped generator
+                next = used != null ? used : new byte[BLOCK_SIZE];
+                stripes[(int) Thread.currentThread().getId() & stripeMask].nextBytes(next);
+            } else if (used != null) {
+                spare.offer(used);
+            }
+            cursor.block = next;
+            cursor.position = 0;
+        }
+        return cursor.block[cursor.position++] & 0xFF;
+    }
+
+    private void refill() {
+        SecureRandom random = new SecureRandom();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // Blocks held by threads that have since died never come back, so top up
+                byte[] block = spare.poll(100, TimeUnit.MILLISECONDS);
+                if (block == null) {
+                    block = new byte[BLOCK_SIZE];
+                }
+                random.nextBytes(block);
+                ready.put(block);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            log.error("OTP random refill stopped; falling back to direct SecureRandom draws", ex);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refiller.interrupt();
+    }
+
+    private static final class Cursor {
+        private byte[] block;
+        private int position = BLOCK_SIZE;
+    }
+}
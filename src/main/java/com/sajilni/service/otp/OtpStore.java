@@ -0,0 +1,43 @@
+package com.sajilni.service.otp;
+
+import java.time.Duration;
+
+/**
+ * Storage for OTP challenges and per-email generation counters.
+ * <p>
+ * Emails are passed already normalized (lower-cased). Implementations are selected with
+ * {@code app.otp.store}: {@code memory} (default, single node), {@code compact} (single node,
+ * primitive layout for millions of pending challenges) or {@code redis} (shared across nodes,
+ * no sticky sessions needed).
+ */
+public interface OtpStore {
+
+    /** Replace any existing challenge for the email with a fresh one. */
+    void saveChallenge(String email, String code, int maxAttempts, Duration ttl);
+
+    /**
+     * Check a code and count the attempt as one atomic step: a match consumes the
+     * challenge, a mismatch increments attempts and locks it at {@code maxAttempts}.
+     */
+    OtpVerification verify(String email, String code);
+
+    int getRemainingAttempts(String email);
+
+    boolean hasValidChallenge(String email);
+
+    /**
+     * Count one generation unless {@code limit} generations already happened in the current
+     * window (which starts with the first generation in it). Check and increment are atomic.
+     *
+     * @return false if the limit was already reached and nothing was counted
+     */
+    boolean tryRecordGeneration(String email, int limit, Duration window);
+
+    void clearGenerationAttempts(String email);
+
+    /** Number of stored challenges, or -1 if the backend cannot report it cheaply. */
+    long size();
+
+    /** Number of stored generation counters, or -1 if the backend cannot report it cheaply. */
+    long generationAttemptsSize();
+}
@@ -0,0 +1,46 @@
+package com.sajilni.service.otp;
+
+/**
+ * Outcome of a single verification attempt against an {@link OtpStore}.
+ *
+ * @param status            what happened to the challenge
+ * @param remainingAttempts attempts left after this one (0 once the challenge is locked or gone)
+ */
+public record OtpVerification(Status status, int remainingAttempts) {
+
+    public enum Status {
+        /** Code matched; the challenge has been consumed. */
+        VERIFIED,
+        /** Code did not match; the attempt was counted (and may have locked the challenge). */
+        MISMATCH,
+        /** Challenge was already locked before this attempt. */
+        LOCKED,
+        /** No challenge, or it expired. */
+        NOT_FOUND
+    }
+
+    public static OtpVerification verified(int remainingAttempts) {
+        return new OtpVerification(Status.VERIFIED, remainingAttempts);
+    }
+
+    public static OtpVerification mismatch(int remainingAttempts) {
+        return new OtpVerification(Status.MISMATCH, remainingAttempts);
+    }
+
+    public static OtpVerification lockedOut() {
+        return new OtpVerification(Status.LOCKED, 0);
+    }
+
+    public static OtpVerification notFound() {
+        return new OtpVerification(Status.NOT_FOUND, 0);
+    }
+
+    public boolean verified() {
+        return status == Status.VERIFIED;
+    }
+
+    /** True if the challenge was locked before or by this attempt. */
+    public boolean locked() {
+        return status == Status.LOCKED || (status == Status.MISMATCH && remainingAttempts <= 0);
+    }
+}
@@ -0,0 +1,161 @@
+package com.sajilni.service.otp;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Open-addressing hash table of fixed-width {@code long} records, stored inline in one
+ * {@code long[]}. Field 0 of each record is the key; {@code 0} marks an empty slot, so callers
+ * must never use it as a key. Linear probing with backward-shift deletion (no tombstones).
+ * <p>
+ * Not thread-safe: callers guard each table with their own lock.
+ */
+final class PackedLongTable {
+    private static final float MAX_LOAD = 0.7f;
+
+    private final int stride;
+    private long[] slots;
+    private int mask;
+    private int size;
+
+    PackedLongTable(int stride, int initialCapacity) {
+        this.stride = stride;
+        int capacity = Integer.highestOneBit(Math.max(2, initialCapacity - 1)) << 1;
+        this.slots = new long[capacity * stride];
+        this.mask = capacity - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Index of the record for {@code key}, or -1. */
+    int indexOf(long key) {
+        int i = (int) key & mask;
+        while (true) {
+            long k = slots[i * stride];
+            if (k == key) {
+                return i;
+            }
+            if (k == 0) {
+                return -1;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /** Index of the record for {@code key}, inserting a zeroed one if absent. */
+    int insert(long key) {
+        if (size + 1 > (mask + 1) * MAX_LOAD) {
+            resize((mask + 1) << 1);
+        }
+        int i = (int) key & mask;
+        while (true) {
+            long k = slots[i * stride];
+            if (k == key) {
+                return i;
+            }
+            if (k == 0) {
+                slots[i * stride] = key;
+                size++;
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    long get(int index, int field) {
+        return slots[index * stride + field];
+    }
+
+    void set(int index, int field, long value) {
+        slots[index * stride + field] = value;
+    }
+
+    void removeAt(int index) {
+        int hole = index;
+        int j = index;
+        while (true) {
+            j = (j + 1) & mask;
+            long k = slots[j * stride];
+            if (k == 0) {
+                break;
+            }
+            // Shift back unless the record's home slot lies cyclically in (hole, j]
+            int home = (int) k & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                System.arraycopy(slots, j * stride, slots, hole * stride, stride);
+                hole = j;
+            }
+        }
+        Arrays.fill(slots, hole * stride, (hole + 1) * stride, 0L);
+        size--;
+    }
+
+    /**
+     * Remove the record with the smallest {@code field & fieldMask} among the first
+     * {@code samples} records found probing from {@code key}'s home slot; an O(1) approximation
+     * of "evict the oldest" in the spirit of sampled LRU.
+     *
+     * @return false if the table is empty
+     */
+    boolean evictSampled(long key, int field, long fieldMask, int samples) {
+        int capacity = mask + 1;
+        int i = (int) key & mask;
+        int best = -1;
+        long bestValue = Long.MAX_VALUE;
+        for (int probed = 0, seen = 0; probed < capacity && seen < samples; probed++, i = (i + 1) & mask) {
+            if (slots[i * stride] == 0) {
+                continue;
+            }
+            seen++;
+            long value = slots[i * stride + field] & fieldMask;
+            if (value < bestValue) {
+                best = i;
+                bestValue = value;
+            }
+        }
+        if (best < 0) {
+            return false;
+        }
+        removeAt(best);
+        return true;
+    }
+
+    /**
+     * Remove every record whose {@code field} matches {@code predicate}, in one pass over the
+     * slots. A removal can shift the next record back into the current slot, so that slot is
+     * tested again before moving on.
+     *
+     * @return the number of records removed
+     */
+    int removeIf(int field, LongPredicate predicate) {
+        int removed = 0;
+        for (int i = 0; i <= mask; ) {
+            if (slots[i * stride] != 0 && predicate.test(slots[i * stride + field])) {
+                removeAt(i);
+                removed++;
+            } else {
+                i++;
+            }
+        }
+        return removed;
+    }
+
+    private void resize(int capacity) {
+        long[] old = slots;
+        slots = new long[capacity * stride];
+        mask = capacity - 1;
+        for (int base = 0; base < old.length; base += stride) {
+            long key = old[base];
+            if (key == 0) {
+                continue;
+            }
+            int i = (int) key & mask;
+            while (slots[i * stride] != 0) {
+                i = (i + 1) & mask;
+            }
+            System.arraycopy(old, base, slots, i * stride, stride);
+        }
+    }
+}
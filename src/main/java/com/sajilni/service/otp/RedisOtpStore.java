@@ -0,0 +1,141 @@
+package com.sajilni.service.otp;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Redis-backed OTP store shared by every node.
+ * <p>
+ * A challenge is a hash at {@code otp:challenge:<email>} (fields {@code code}, {@code attempts},
+ * {@code max}, {@code locked}) whose key TTL is the OTP lifetime; generation counters live
+ * at {@code otp:gen:<email>} with the rate-limit window as TTL. Verification, attempt counting
+ * and locking run as one Lua script, so a verify is a single round trip and cannot race.
+ */
+@Component
+@ConditionalOnProperty(name = "app.otp.store", havingValue = "redis")
+public class RedisOtpStore implements OtpStore {
+    private static final String CHALLENGE_PREFIX = "otp:challenge:";
+    private static final String GENERATION_PREFIX = "otp:gen:";
+
+    private static final long STATUS_VERIFIED = 1;
+    private static final long STATUS_MISMATCH = 2;
+    private static final long STATUS_LOCKED = 3;
+
+    private static final RedisScript<Long> SAVE_SCRIPT = RedisScript.of("""
+            redis.call('DEL', KEYS[1])
+            redis.call('HSET', KEYS[1], 'code', ARGV[1], 'attempts', 0, 'max', ARGV[2], 'locked', 0)
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            return 1
+            """, Long.class);
+
+    // Returns {status, remainingAttempts}; status 0 = not found, 1 = verified, 2 = mismatch, 3 = locked
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> VERIFY_SCRIPT = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return {0, 0}
+            end
+            if redis.call('HGET', KEYS[1], 'locked') == '1' then
+                return {3, 0}
+            end
+            local max = tonumber(redis.call('HGET', KEYS[1], 'max'))
+            local attempts = redis.call('HINCRBY', KEYS[1], 'attempts', 1)
+            local remaining = math.max(0, max - attempts)
+            if string.lower(redis.call('HGET', KEYS[1], 'code')) == string.lower(ARGV[1]) then
+                redis.call('DEL', KEYS[1])
+                return {1, remaining}
+            end
+            if attempts >= max then
+                redis.call('HSET', KEYS[1], 'locked', 1)
+            end
+            return {2, remaining}
+            """, List.class);
+
+    // Returns 1 if the generation was counted, 0 if the window's limit was already reached
+    private static final RedisScript<Long> RECORD_GENERATION_SCRIPT = RedisScript.of("""
+            local count = tonumber(redis.call('GET', KEYS[1]) or '0')
+            if count >= tonumber(ARGV[1]) then
+                return 0
+            end
+            if redis.call('INCR', KEYS[1]) == 1 then
+                redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redis;
+
+    public RedisOtpStore(StringRedisTemplate redis) {
+        this.redis = redis;
+    }
+
+    @Override
+    public void saveChallenge(String email, String code, int maxAttempts, Duration ttl) {
+        redis.execute(SAVE_SCRIPT, List.of(CHALLENGE_PREFIX + email),
+                code, String.valueOf(maxAttempts), String.valueOf(ttl.toMillis()));
+    }
+
+    @Override
+    public OtpVerification verify(String email, String code) {
+        List<?> result = redis.execute(VERIFY_SCRIPT, List.of(CHALLENGE_PREFIX + email), code);
+        if (result == null || result.size() < 2) {
+            return OtpVerification.notFound();
+        }
+
+        long status = ((Number) result.get(0)).longValue();
+        int remaining = ((Number) result.get(1)).intValue();
+
+        if (status == STATUS_VERIFIED) {
+            return OtpVerification.verified(remaining);
+        } else if (status == STATUS_MISMATCH) {
+            return OtpVerification.mismatch(remaining);
+        } else if (status == STATUS_LOCKED) {
+            return OtpVerification.lockedOut();
+        }
+        return OtpVerification.notFound();
+    }
+
+    @Override
+    public int getRemainingAttempts(String email) {
+        List<Object> fields = redis.opsForHash()
+                .multiGet(CHALLENGE_PREFIX + email, List.of("attempts", "max", "locked"));
+        if (fields.get(0) == null || "1".equals(fields.get(2))) {
+            return 0;
+        }
+        int attempts = Integer.parseInt((String) fields.get(0));
+        int max = Integer.parseInt((String) fields.get(1));
+        return Math.max(0, max - attempts);
+    }
+
+    @Override
+    public boolean hasValidChallenge(String email) {
+        Object locked = redis.opsForHash().get(CHALLENGE_PREFIX + email, "locked");
+        return locked != null && !"1".equals(locked);
+    }
+
+    @Override
+    public boolean tryRecordGeneration(String email, int limit, Duration window) {
+        Long recorded = redis.execute(RECORD_GENERATION_SCRIPT, List.of(GENERATION_PREFIX + email),
+                String.valueOf(limit), String.valueOf(window.toMillis()));
+        return recorded != null && recorded == 1L;
+    }
+
+    @Override
+    public void clearGenerationAttempts(String email) {
+        redis.delete(GENERATION_PREFIX + email);
+    }
+
+    @Override
+    public long size() {
+        return -1;
+    }
+
+    @Override
+    public long generationAttemptsSize() {
+        return -1;
+    }
+}
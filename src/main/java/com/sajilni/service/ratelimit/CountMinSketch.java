@@ -0,0 +1,70 @@
+package com.sajilni.service.ratelimit;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock-free count-min sketch with conservative update: an increment only raises the rows that
+ * sit at the current minimum, which keeps over-estimation well below the plain variant. Memory
+ * is {@code depth * width} ints whatever the number of distinct keys.
+ */
+final class CountMinSketch {
+    private final AtomicIntegerArray counts;
+    private final int depth;
+    private final int width;
+    private final int mask;
+
+    CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.mask = this.width - 1;
+        this.counts = new AtomicIntegerArray(depth * this.width);
+    }
+
+    /** Count one occurrence and return the new estimate. */
+    int add(long hash) {
+        int target = estimate(hash) + 1;
+        for (int row = 0; row < depth; row++) {
+            int index = index(row, hash);
+            int current;
+            while ((current = counts.get(index)) < target && !counts.compareAndSet(index, current, target)) {
+                // retry
+            }
+        }
+        return target;
+    }
+
+    int estimate(long hash) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counts.get(index(row, hash)));
+        }
+        return min;
+    }
+
+    /**
+     * Take the key's estimate off each of its counters, so its estimate drops to zero. Keys
+     * sharing a counter lose at most that much, which errs towards under-counting them.
+     */
+    void reset(long hash) {
+        int estimate = estimate(hash);
+        if (estimate == 0) {
+            return;
+        }
+        for (int row = 0; row < depth; row++) {
+            counts.getAndUpdate(index(row, hash), c -> Math.max(0, c - estimate));
+        }
+    }
+
+    /** Halve every counter so old activity fades out. */
+    void decay() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.getAndUpdate(i, c -> c >>> 1);
+        }
+    }
+
+    private int index(int row, long hash) {
+        // Derive independent row hashes from the two halves of one 64-bit hash
+        int h = (int) hash + row * (int) (hash >>> 32);
+        return row * width + (h & mask);
+    }
+}
@@ -0,0 +1,309 @@
+package com.sajilni.service.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.sajilni.config.RateLimitConfig;
+import com.sajilni.service.expiry.ExpiryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cluster-wide counterpart of {@link GcraRateLimiter}, so spreading attempts over N nodes does
+ * not buy N times the limit.
+ * <p>
+ * Each key has a Redis counter {@code rl:{policy:key}} living for one policy window and a lock
+ * key {@code rl:{policy:key}:lock} set once the counter reaches the limit. Events are counted
+ * into local {@link LongAdder}s and flushed every {@code flush-interval} as one pipelined batch;
+ * every flush reply carries the cluster-wide count back. Only once a key's known count reaches
+ * {@code exact-check-ratio} of its limit do recording and checking go to Redis synchronously.
+ * <p>
+ * A node that has never seen a key knows nothing about it until its first event has been
+ * flushed, so the cluster may admit up to one extra attempt per node. Redis errors fail open;
+ * the per-node limiter still applies.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.security.rate-limit.distributed.enabled", havingValue = "true")
+public class DistributedRateLimiter {
+    private static final String KEY_PREFIX = "rl:{";
+
+    // INCRBY with the window as TTL on creation; sets the lock (lockout, or the rest of the window) at the limit
+    private static final String RECORD_SCRIPT_SOURCE = """
+            local count = redis.call('INCRBY', KEYS[1], ARGV[1])
+            if count == tonumber(ARGV[1]) then
+                redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            if count >= tonumber(ARGV[3]) and redis.call('EXISTS', KEYS[2]) == 0 then
+                local ttl = tonumber(ARGV[4])
+                if ttl <= 0 then
+                    ttl = redis.call('PTTL', KEYS[1])
+                end
+                if ttl > 0 then
+                    redis.call('SET', KEYS[2], '1', 'PX', ttl)
+                end
+            end
+            return count
+            """;
+    private static final RedisScript<Long> RECORD_SCRIPT = RedisScript.of(RECORD_SCRIPT_SOURCE, Long.class);
+    private static final byte[] RECORD_SCRIPT_BYTES = RECORD_SCRIPT_SOURCE.getBytes(StandardCharsets.UTF_8);
+
+    private final StringRedisTemplate redis;
+    private final ExpiryService expiryService;
+    private final double exactCheckRatio;
+    private final ConcurrentMap<String, Entry> entries;
+    private final ConcurrentLinkedQueue<Entry> dirty = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Entry> resets = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+
+    public DistributedRateLimiter(StringRedisTemplate redis, ExpiryService expiryService, RateLimitConfig config,
+                                  MeterRegistry meterRegistry) {
+        this.redis = redis;
+        this.expiryService = expiryService;
+        this.exactCheckRatio = config.getDistributed().getExactCheckRatio();
+
+        // Evicting an entry only forgets the last known remote count; queued deltas still flush.
+        // Its idle timer goes with it, so the wheel never outgrows the key cap.
+        Counter evictions = Counter.builder("ratelimit.evicted.pressure")
+                .description("Rate-limit keys evicted because the key cap was reached")
+                .tag("policy", "distributed")
+                .register(meterRegistry);
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(config.getDistributed().getMaximumKeys())
+                .<String, Entry>evictionListener((key, entry, cause) -> {
+                    if (entry != null) {
+                        entry.cancelExpiry();
+                    }
+                    if (cause == RemovalCause.SIZE) {
+                        evictions.increment();
+                    }
+                })
+                .build()
+                .asMap();
+
+        long flushMillis = Math.max(1, config.getDistributed().getFlushInterval().toMillis());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rate-limit-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isLimited(RateLimitPolicy policy, String key) {
+        Entry entry = entries.get(counterKey(policy, key));
+        if (entry == null || entry.estimate() < exactThreshold(policy)) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(redis.hasKey(entry.lockKey));
+        } catch (RuntimeException ex) {
+            log.warn("Distributed rate limit check failed for policy {}: {}", policy.name(), ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Count one event cluster-wide.
+     *
+     * @return whether the key is limited after this event; always false while the count is
+     * only batched locally, since the batch cannot have reached the limit yet
+     */
+    public boolean record(RateLimitPolicy policy, String key) {
+        Entry entry = entry(policy, key);
+        entry.lastTouched = System.currentTimeMillis();
+
+        if (entry.estimate() + 1 < exactThreshold(policy)) {
+            entry.pending.increment();
+            markDirty(entry);
+            return false;
+        }
+
+        long delta = entry.pending.sumThenReset() + 1;
+        try {
+            Long count = redis.execute(RECORD_SCRIPT, List.of(entry.counterKey, entry.lockKey),
+                    String.valueOf(delta), String.valueOf(policy.window().toMillis()),
+                    String.valueOf(policy.limit()), String.valueOf(policy.lockout().toMillis()));
+            long total = count != null ? count : 0;
+            entry.remoteCount = total;
+            return total >= policy.limit();
+        } catch (RuntimeException ex) {
+            log.warn("Distributed rate limit record failed for policy {}: {}", policy.name(), ex.getMessage());
+            entry.pending.add(delta);
+            markDirty(entry);
+            return false;
+        }
+    }
+
+    /** Forget the key cluster-wide; the Redis delete rides on the next flush. */
+    public void reset(RateLimitPolicy policy, String key) {
+        String counterKey = counterKey(policy, key);
+        Entry entry = entries.remove(counterKey);
+        if (entry != null) {
+            entry.cancelExpiry();
+            entry.pending.reset();
+            entry.remoteCount = 0;
+        }
+        resets.add(entry != null ? entry : new Entry(policy, counterKey));
+    }
+
+    private void flush() {
+        List<Entry> deletes = drain(resets);
+        List<Entry> batch = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        Entry entry;
+        while ((entry = dirty.poll()) != null) {
+            entry.queued.set(false);
+            long delta = entry.pending.sumThenReset();
+            if (delta > 0) {
+                batch.add(entry);
+                deltas.add(delta);
+            }
+        }
+        if (deletes.isEmpty() && batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<Object> replies = redis.executePipelined((RedisCallback<Object>) connection -> {
+                for (Entry reset : deletes) {
+                    connection.keyCommands().del(bytes(reset.counterKey), bytes(reset.lockKey));
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    Entry e = batch.get(i);
+                    connection.scriptingCommands().eval(RECORD_SCRIPT_BYTES, ReturnType.INTEGER, 2,
+                            bytes(e.counterKey), bytes(e.lockKey),
+                            bytes(String.valueOf(deltas.get(i))),
+                            bytes(String.valueOf(e.policy.window().toMillis())),
+                            bytes(String.valueOf(e.policy.limit())),
+                            bytes(String.valueOf(e.policy.lockout().toMillis())));
+                }
+                return null;
+            });
+
+            for (int i = 0; i < batch.size(); i++) {
+                if (replies.get(deletes.size() + i) instanceof Long count) {
+                    batch.get(i).remoteCount = count;
+                }
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Distributed rate limit flush of {} keys failed: {}", batch.size() + deletes.size(), ex.getMessage());
+            resets.addAll(deletes);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).pending.add(deltas.get(i));
+                markDirty(batch.get(i));
+            }
+        }
+    }
+
+    private Entry entry(RateLimitPolicy policy, String key) {
+        String counterKey = counterKey(policy, key);
+        Entry entry = entries.get(counterKey);
+        if (entry != null) {
+            return entry;
+        }
+        Entry created = new Entry(policy, counterKey);
+        Entry existing = entries.putIfAbsent(counterKey, created);
+        if (existing != null) {
+            return existing;
+        }
+        scheduleEviction(created);
+        return created;
+    }
+
+    /** Drop local state once a key has been idle for a whole window and has nothing to flush. */
+    private void scheduleEviction(Entry entry) {
+        entry.expiry = expiryService.schedule(entry.policy.window(), () -> {
+            long idle = System.currentTimeMillis() - entry.lastTouched;
+            if (idle >= entry.policy.window().toMillis() && entry.pending.sum() == 0) {
+                entries.remove(entry.counterKey, entry);
+            } else if (entries.get(entry.counterKey) == entry) {
+                scheduleEviction(entry);
+            }
+        });
+        if (entries.get(entry.counterKey) != entry) {
+            // Evicted or reset before the timer was stored: nothing else will cancel it
+            entry.cancelExpiry();
+        }
+    }
+
+    private void markDirty(Entry entry) {
+        if (entry.queued.compareAndSet(false, true)) {
+            dirty.add(entry);
+        }
+    }
+
+    private long exactThreshold(RateLimitPolicy policy) {
+        return Math.max(1, (long) Math.floor(policy.limit() * exactCheckRatio));
+    }
+
+    private static String counterKey(RateLimitPolicy policy, String key) {
+        // Hash tag keeps counter and lock in the same cluster slot for the script
+        return KEY_PREFIX + policy.name() + ":" + key + "}";
+    }
+
+    private static List<Entry> drain(ConcurrentLinkedQueue<Entry> queue) {
+        List<Entry> drained = new ArrayList<>();
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            drained.add(entry);
+        }
+        return drained;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdown();
+        flush();
+    }
+
+    private static final class Entry {
+        private final RateLimitPolicy policy;
+        private final String counterKey;
+        private final String lockKey;
+        private final LongAdder pending = new LongAdder();
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private volatile long remoteCount;
+        private volatile long lastTouched = System.currentTimeMillis();
+        private volatile ExpiryService.Timeout expiry;
+
+        Entry(RateLimitPolicy policy, String counterKey) {
+            this.policy = policy;
+            this.counterKey = counterKey;
+            this.lockKey = counterKey + ":lock";
+        }
+
+        long estimate() {
+            return remoteCount + pending.sum();
+        }
+
+        void cancelExpiry() {
+            ExpiryService.Timeout timeout = expiry;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.sajilni.service.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.sajilni.service.expiry.ExpiryService;
+import io.micrometer.core.instrument.Counter;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generic cell rate algorithm (GCRA) limiter for one {@link RateLimitPolicy}.
+ * <p>
+ * Each key holds a single packed {@code long}: the theoretical arrival time (TAT) in the high
+ * 32 bits and the lockout deadline in the low 32 bits, both in seconds since
+ * {@link #EPOCH_BASE}. Every event pushes the TAT one emission interval ({@code window / limit})
+ * further; a key is limited while the TAT runs more than {@code (limit - 1)} intervals ahead of
+ * now, or while its lockout lasts. This is a sliding window without a per-event log: O(1)
+ * memory per key and one CAS per event.
+ * <p>
+ * Keys are dropped by the {@link ExpiryService} once both deadlines have passed. The key space
+ * is capped at {@code maximumSize} with Caffeine's W-TinyLFU policy, so flooding with unique
+ * keys evicts one-off keys first instead of growing the heap; such evictions are counted on
+ * {@code pressureEvictions}. A dropped or evicted holder is first set to {@link #DEAD} so a
+ * racing writer notices and starts a fresh one, and its pending expiry timer is cancelled, so
+ * the wheel holds at most one timer per live key however fast keys churn.
+ */
+public final class GcraRateLimiter {
+    private static final long EPOCH_BASE = 1_704_067_200L; // 2024-01-01T00:00:00Z
+    private static final long LOW_MASK = 0xFFFF_FFFFL;
+    private static final long DEAD = -1L;
+
+    private final RateLimitPolicy policy;
+    private final long intervalSeconds;
+    private final long toleranceSeconds;
+    private final long lockoutSeconds;
+    private final ConcurrentMap<String, KeyState> states;
+    private final ExpiryService expiryService;
+
+    public GcraRateLimiter(RateLimitPolicy policy, ExpiryService expiryService,
+                           long maximumSize, Counter pressureEvictions) {
+        this.policy = policy;
+        this.expiryService = expiryService;
+        this.states = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .<String, KeyState>evictionListener((key, state, cause) -> {
+                    if (state != null) {
+                        state.kill();
+                    }
+                    if (cause == RemovalCause.SIZE) {
+                        pressureEvictions.increment();
+                    }
+                })
+                .build()
+                .asMap();
+        // Second resolution: the interval is rounded up so a burst never exceeds the limit
+        this.intervalSeconds = Math.max(1, -Math.floorDiv(-policy.window().toSeconds(), policy.limit()));
+        this.toleranceSeconds = (policy.limit() - 1) * intervalSeconds;
+        this.lockoutSeconds = policy.lockout().toSeconds();
+    }
+
+    public RateLimitPolicy policy() {
+        return policy;
+    }
+
+    public boolean isLimited(String key) {
+        KeyState state = states.get(key);
+        if (state == null) {
+            return false;
+        }
+        long packed = state.get();
+        return packed != DEAD && isLimited(packed, now());
+    }
+
+    /**
+     * Count one event for {@code key}.
+     *
+     * @return whether the key is limited after this event
+     */
+    public boolean record(String key) {
+        long now = now();
+        while (true) {
+            KeyState state = states.get(key);
+            if (state == null) {
+                KeyState created = new KeyState();
+                if (states.putIfAbsent(key, created) == null) {
+                    scheduleExpiry(key, created, policy.window());
+                }
+                continue;
+            }
+
+            long packed = state.get();
+            if (packed == DEAD) {
+                states.remove(key, state);
+                continue;
+            }
+
+            // Non-conforming events still count, but the TAT never runs more than a window ahead
+            long tat = Math.min(Math.max(tat(packed), now) + intervalSeconds, now + toleranceSeconds + intervalSeconds);
+            long lockout = lockout(packed);
+            boolean overLimit = tat - now > toleranceSeconds;
+            if (overLimit && lockout <= now && lockoutSeconds > 0) {
+                lockout = now + lockoutSeconds;
+            }
+            if (state.compareAndSet(packed, pack(tat, lockout))) {
+                return overLimit || now < lockout;
+            }
+        }
+    }
+
+    public void reset(String key) {
+        KeyState state = states.remove(key);
+        if (state != null) {
+            state.kill();
+        }
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    private void expire(String key, KeyState state) {
+        while (true) {
+            long packed = state.get();
+            if (packed == DEAD) {
+                return;
+            }
+            long now = now();
+            long until = Math.max(tat(packed), lockout(packed));
+            if (until > now) {
+                scheduleExpiry(key, state, Duration.ofSeconds(until - now));
+                return;
+            }
+            if (state.compareAndSet(packed, DEAD)) {
+                states.remove(key, state);
+                return;
+            }
+        }
+    }
+
+    private void scheduleExpiry(String key, KeyState state, Duration delay) {
+        state.expiry = expiryService.schedule(delay, () -> expire(key, state));
+        if (state.get() == DEAD) {
+            // Evicted between insert and scheduling: the listener saw no timer to cancel
+            state.expiry.cancel();
+        }
+    }
+
+    private boolean isLimited(long packed, long now) {
+        return now < lockout(packed) || tat(packed) - now > toleranceSeconds;
+    }
+
+    private static long pack(long tat, long lockout) {
+        return (tat << 32) | (lockout & LOW_MASK);
+    }
+
+    private static long tat(long packed) {
+        return packed >>> 32;
+    }
+
+    private static long lockout(long packed) {
+        return packed & LOW_MASK;
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000 - EPOCH_BASE;
+    }
+
+    /** Packed TAT and lockout, plus the key's pending expiry timer. */
+    private static final class KeyState extends AtomicLong {
+        private volatile ExpiryService.Timeout expiry;
+
+        void kill() {
+            set(DEAD);
+            ExpiryService.Timeout timeout = expiry;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.sajilni.service.ratelimit;
+
+/** A key with its estimated failed-login count in the current decay period. */
+public record HeavyHitter(String key, long estimate) {}
@@ -0,0 +1,187 @@
+package com.sajilni.service.ratelimit;
+
+import com.sajilni.config.RateLimitConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed-memory credential-stuffing detector fed with failed logins.
+ * <p>
+ * Each {@link Dimension} has a {@link CountMinSketch} for frequency estimates and a top-K table
+ * of the heaviest keys seen, so memory stays constant no matter how many distinct addresses or
+ * emails an attacker cycles through. Counters are halved every {@code decay-interval}. With
+ * {@code block-addresses} on, an IP or subnet crossing its threshold is put on the
+ * {@link IpBlocklist}; see {@link RateLimitConfig.HeavyHitters#isBlockAddresses()} for when that
+ * is safe.
+ */
+@Slf4j
+@Service
+public class HeavyHitterDetector {
+
+    public enum Dimension { IP, SUBNET, EMAIL, DOMAIN }
+
+    private final Map<Dimension, Tracker> trackers = new EnumMap<>(Dimension.class);
+    private final IpBlocklist blocklist;
+    private final RateLimitConfig.HeavyHitters config;
+    private final long seed = new SecureRandom().nextLong();
+
+    public HeavyHitterDetector(IpBlocklist blocklist, RateLimitConfig rateLimitConfig,
+                               @Value("${server.forward-headers-strategy:none}") String forwardHeadersStrategy) {
+        this.blocklist = blocklist;
+        this.config = rateLimitConfig.getHeavyHitters();
+        for (Dimension dimension : Dimension.values()) {
+            trackers.put(dimension, new Tracker(new CountMinSketch(config.getSketchDepth(), config.getSketchWidth()),
+                    config.getTopK()));
+        }
+        if (config.isBlockAddresses() && "none".equalsIgnoreCase(forwardHeadersStrategy)) {
+            log.warn("Heavy-hitter address blocking is on without server.forward-headers-strategy; "
+                    + "behind a proxy or load balancer every client shares its address and can get it blocked");
+        }
+    }
+
+    /**
+     * Count one failed login. {@code ip} may be null when there is no current request.
+     */
+    public void recordFailedLogin(String ip, String email) {
+        if (ip != null) {
+            String subnet = IpBlocklist.subnetOf(ip);
+            long ipCount = record(Dimension.IP, ip);
+            long subnetCount = record(Dimension.SUBNET, subnet);
+
+            // Sketch estimates can jump past the threshold (collisions, concurrent adds), so
+            // block on anything at or above it that is not already blocked
+            if (config.isBlockAddresses()) {
+                if (ipCount >= config.getIpBlockThreshold() && !blocklist.isBlockedExactly(ip)) {
+                    blocklist.block(ip, config.getBlockDuration());
+                }
+                if (subnetCount >= config.getSubnetBlockThreshold() && !blocklist.isBlockedExactly(subnet)) {
+                    blocklist.block(subnet, config.getBlockDuration());
+                }
+            }
+        }
+        if (email != null) {
+            record(Dimension.EMAIL, email);
+            int at = email.lastIndexOf('@');
+            if (at >= 0) {
+                record(Dimension.DOMAIN, email.substring(at + 1));
+            }
+        }
+    }
+
+    public Map<Dimension, List<HeavyHitter>> heavyHitters() {
+        Map<Dimension, List<HeavyHitter>> result = new EnumMap<>(Dimension.class);
+        trackers.forEach((dimension, tracker) -> result.put(dimension, tracker.top()));
+        return result;
+    }
+
+    /**
+     * Drop the counts behind an address or subnet (in {@link IpBlocklist#subnetOf} form), so an
+     * unblocked target starts from zero instead of being blocked again by its next failure.
+     */
+    public void forget(String target) {
+        Dimension dimension = target.indexOf('/') >= 0 ? Dimension.SUBNET : Dimension.IP;
+        trackers.get(dimension).forget(target, hash(target));
+    }
+
+    @Scheduled(fixedRateString = "${app.security.rate-limit.heavy-hitters.decay-interval:PT10M}")
+    public void decay() {
+        trackers.values().forEach(Tracker::decay);
+        log.debug("Heavy-hitter counters decayed");
+    }
+
+    public Duration getBlockDuration() {
+        return config.getBlockDuration();
+    }
+
+    private long record(Dimension dimension, String key) {
+        Tracker tracker = trackers.get(dimension);
+        int estimate = tracker.sketch.add(hash(key));
+        tracker.offer(key, estimate);
+        return estimate;
+    }
+
+    private long hash(String key) {
+        long h = seed;
+        for (int i = 0; i < key.length(); i++) {
+            h = 31 * h + key.charAt(i);
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Tracker {
+        private final CountMinSketch sketch;
+        private final int capacity;
+        private final Map<String, Integer> top;
+        private int minimum;
+
+        Tracker(CountMinSketch sketch, int capacity) {
+            this.sketch = sketch;
+            this.capacity = capacity;
+            this.top = new HashMap<>(capacity * 2);
+        }
+
+        synchronized void offer(String key, int estimate) {
+            if (top.containsKey(key)) {
+                top.put(key, estimate);
+            } else if (top.size() < capacity) {
+                top.put(key, estimate);
+            } else if (estimate > minimum) {
+                // Replace the lightest entry; K is small, so a scan is cheaper than a heap
+                String lightest = null;
+                int lightestCount = Integer.MAX_VALUE;
+                for (Map.Entry<String, Integer> entry : top.entrySet()) {
+                    if (entry.getValue() < lightestCount) {
+                        lightest = entry.getKey();
+                        lightestCount = entry.getValue();
+                    }
+                }
+                top.remove(lightest);
+                top.put(key, estimate);
+            } else {
+                return;
+            }
+            minimum = top.size() < capacity ? 0 : top.values().stream().mapToInt(Integer::intValue).min().orElse(0);
+        }
+
+        synchronized List<HeavyHitter> top() {
+            List<HeavyHitter> hitters = new ArrayList<>(top.size());
+            top.forEach((key, count) -> hitters.add(new HeavyHitter(key, count)));
+            hitters.sort(Comparator.comparingLong(HeavyHitter::estimate).reversed());
+            return hitters;
+        }
+
+        void forget(String key, long hash) {
+            sketch.reset(hash);
+            synchronized (this) {
+                if (top.remove(key) != null) {
+                    minimum = 0;
+                }
+            }
+        }
+
+        void decay() {
+            sketch.decay();
+            synchronized (this) {
+                top.replaceAll((key, count) -> count >>> 1);
+                top.values().removeIf(count -> count == 0);
+                minimum = 0;
+            }
+        }
+    }
+}
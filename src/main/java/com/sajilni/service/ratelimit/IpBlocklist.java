@@ -0,0 +1,88 @@
+package com.sajilni.service.ratelimit;
+
+import com.sajilni.config.RateLimitConfig;
+import com.sajilni.service.expiry.ExpiryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Temporarily blocked client addresses and subnets ({@code a.b.c.0/24} for IPv4, the first four
+ * groups {@code /64} for IPv6). Bounded by {@code max-blocks}; entries leave through the expiry
+ * wheel. Consulted by the admission filter on every request, so the unblocked path is a single
+ * emptiness check.
+ */
+@Slf4j
+@Component
+public class IpBlocklist {
+    private final ConcurrentHashMap<String, Instant> blocked = new ConcurrentHashMap<>();
+    private final ExpiryService expiryService;
+    private final int maxBlocks;
+
+    public IpBlocklist(ExpiryService expiryService, RateLimitConfig config) {
+        this.expiryService = expiryService;
+        this.maxBlocks = config.getHeavyHitters().getMaxBlocks();
+    }
+
+    public boolean isBlocked(String address) {
+        if (blocked.isEmpty() || address == null) {
+            return false;
+        }
+        Instant now = Instant.now();
+        return isActive(blocked.get(address), now) || isActive(blocked.get(subnetOf(address)), now);
+    }
+
+    /** Whether {@code target} itself has an active block, ignoring any covering subnet. */
+    public boolean isBlockedExactly(String target) {
+        return !blocked.isEmpty() && isActive(blocked.get(target), Instant.now());
+    }
+
+    /**
+     * Block an address or a subnet in the form returned by {@link #subnetOf(String)}.
+     *
+     * @return false if the blocklist is full
+     */
+    public boolean block(String target, Duration duration) {
+        if (blocked.size() >= maxBlocks && !blocked.containsKey(target)) {
+            log.warn("Blocklist full ({} entries); not blocking {}", maxBlocks, target);
+            return false;
+        }
+        Instant until = Instant.now().plus(duration);
+        blocked.merge(target, until, (a, b) -> a.isAfter(b) ? a : b);
+        expiryService.schedule(duration, () -> blocked.computeIfPresent(target,
+                (k, current) -> isActive(current, Instant.now()) ? current : null));
+        log.warn("Blocked {} until {}", target, until);
+        return true;
+    }
+
+    public boolean unblock(String target) {
+        return blocked.remove(target) != null;
+    }
+
+    public Map<String, Instant> snapshot() {
+        return new TreeMap<>(blocked);
+    }
+
+    /** {@code a.b.c.0/24} for IPv4, {@code g1:g2:g3:g4::/64} for IPv6. */
+    public static String subnetOf(String address) {
+        if (address.indexOf(':') < 0) {
+            int lastDot = address.lastIndexOf('.');
+            return lastDot < 0 ? address : address.substring(0, lastDot) + ".0/24";
+        }
+        // Servlet containers report IPv6 fully expanded (no "::"), so the prefix is the first four groups
+        int end = 0;
+        for (int groups = 0; groups < 4 && end >= 0; groups++) {
+            end = address.indexOf(':', end + (groups == 0 ? 0 : 1));
+        }
+        return end < 0 ? address : address.substring(0, end) + "::/64";
+    }
+
+    private static boolean isActive(Instant until, Instant now) {
+        return until != null && until.isAfter(now);
+    }
+}
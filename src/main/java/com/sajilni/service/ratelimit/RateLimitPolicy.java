@@ -0,0 +1,20 @@
+package com.sajilni.service.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * {@code limit} events per {@code window}; crossing it additionally locks the key out for
+ * {@code lockout} (may be zero).
+ */
+public record RateLimitPolicy(String name, int limit, Duration window, Duration lockout) {
+
+    public RateLimitPolicy {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Rate limit policy '" + name + "' needs a limit of at least 1");
+        }
+        if (window == null || window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("Rate limit policy '" + name + "' needs a positive window");
+        }
+        lockout = lockout == null ? Duration.ZERO : lockout;
+    }
+}
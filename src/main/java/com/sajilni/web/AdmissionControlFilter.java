@@ -0,0 +1,146 @@
+package com.sajilni.web;
+
+import com.sajilni.config.RateLimitConfig;
+import com.sajilni.service.ratelimit.IpBlocklist;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cheap per-IP and per-route throttle that runs ahead of Spring Security, Jackson and Bean
+ * Validation, so abusive traffic is turned away before any body is read or any BCrypt hash is
+ * computed. Every request takes a token from its IP bucket; requests to a configured route also
+ * take one from that route's per-IP bucket. Rejections are 429 with {@code Retry-After};
+ * admitted requests carry {@code RateLimit-Limit/Remaining/Reset} for the tighter bucket.
+ * Addresses on the {@link IpBlocklist} (directly or by subnet) are rejected outright.
+ * <p>
+ * Registered by {@link com.sajilni.config.AdmissionConfig}. Client IP is
+ * {@link HttpServletRequest#getRemoteAddr()}, so deployments behind a proxy need
+ * {@code server.forward-headers-strategy} set.
+ * <p>
+ * IPv6 clients are bucketed by their {@code /64}, the smallest block normally assigned to one
+ * subscriber: rotating addresses inside it buys no extra tokens and cannot spray the shared
+ * slots. The tables stay fixed-size and hashed, so an attacker holding many prefixes can still
+ * collide with other clients' slots; see {@code table-size}.
+ */
+@Slf4j
+public class AdmissionControlFilter extends OncePerRequestFilter {
+    static final String LIMIT_HEADER = "RateLimit-Limit";
+    static final String REMAINING_HEADER = "RateLimit-Remaining";
+    static final String RESET_HEADER = "RateLimit-Reset";
+    static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final int BLOCKED_RETRY_AFTER_SECONDS = 300;
+
+    private static final byte[] REJECTED_BODY = """
+            {"status":429,"error":"Too Many Requests","code":"rate.limited","message":"Too many requests. Please try again later."}"""
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final TokenBucketTable ipBuckets;
+    private final Map<String, TokenBucketTable> routeBuckets;
+    private final IpBlocklist blocklist;
+    private final long seed = new SecureRandom().nextLong();
+
+    public AdmissionControlFilter(RateLimitConfig.Admission config, IpBlocklist blocklist) {
+        this.blocklist = blocklist;
+        this.ipBuckets = new TokenBucketTable(config.getTableSize(),
+                config.getIp().getCapacity(), config.getIp().getRefillPerSecond());
+        Map<String, TokenBucketTable> routes = new HashMap<>();
+        config.getRoutes().forEach((path, bucket) -> routes.put(path,
+                new TokenBucketTable(config.getTableSize(), bucket.getCapacity(), bucket.getRefillPerSecond())));
+        this.routeBuckets = Map.copyOf(routes);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        // CORS preflights are sent by browsers on their own and would double-charge every route
+        return HttpMethod.OPTIONS.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        String address = request.getRemoteAddr();
+        if (blocklist.isBlocked(address)) {
+            log.debug("Admission rejected {} {} from blocked {}", request.getMethod(), request.getRequestURI(), address);
+            response.setStatus(429);
+            response.setHeader(RETRY_AFTER_HEADER, String.valueOf(BLOCKED_RETRY_AFTER_SECONDS));
+            writeRejectedBody(response);
+            return;
+        }
+        long hash = hash(bucketKey(address));
+
+        TokenBucketTable limiting = ipBuckets;
+        long remaining = ipBuckets.tryAcquire(hash);
+        if (remaining < 0) {
+            reject(request, response, ipBuckets, hash, remaining);
+            return;
+        }
+
+        TokenBucketTable route = routeBuckets.get(request.getServletPath());
+        if (route != null) {
+            long routeRemaining = route.tryAcquire(hash);
+            if (routeRemaining < 0) {
+                reject(request, response, route, hash, routeRemaining);
+                return;
+            }
+            limiting = route;
+            remaining = routeRemaining;
+        }
+
+        response.setHeader(LIMIT_HEADER, String.valueOf(limiting.capacity()));
+        response.setHeader(REMAINING_HEADER, String.valueOf(remaining));
+        response.setHeader(RESET_HEADER, String.valueOf(limiting.secondsUntilFull(hash)));
+        filterChain.doFilter(request, response);
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response,
+                        TokenBucketTable bucket, long hash, long result) throws IOException {
+        long retryAfterSeconds = Math.max(1, (-(result + 1) + 999_999) / 1_000_000);
+        log.debug("Admission rejected {} {} from {}", request.getMethod(), request.getRequestURI(), request.getRemoteAddr());
+
+        response.setStatus(429);
+        response.setHeader(LIMIT_HEADER, String.valueOf(bucket.capacity()));
+        response.setHeader(REMAINING_HEADER, "0");
+        response.setHeader(RESET_HEADER, String.valueOf(bucket.secondsUntilFull(hash)));
+        response.setHeader(RETRY_AFTER_HEADER, String.valueOf(retryAfterSeconds));
+        writeRejectedBody(response);
+    }
+
+    private static void writeRejectedBody(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(REJECTED_BODY.length);
+        response.getOutputStream().write(REJECTED_BODY);
+    }
+
+    /** The address itself for IPv4, its {@code /64} prefix for IPv6. */
+    private static String bucketKey(String address) {
+        return address.indexOf(':') >= 0 ? IpBlocklist.subnetOf(address) : address;
+    }
+
+    /** Seeded so remote clients cannot pick addresses that collide with a victim's bucket. */
+    private long hash(String address) {
+        long h = seed;
+        for (int i = 0; i < address.length(); i++) {
+            h = 31 * h + address.charAt(i);
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,64 @@
+package com.sajilni.web;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size table of token buckets indexed by key hash, one {@code long} per slot.
+ * <p>
+ * Each bucket is kept in virtual-time form: the slot holds the instant (microseconds since the
+ * table was created) at which the bucket would be full again. Taking a token pushes that instant
+ * one refill interval forward and is allowed while it stays within {@code capacity} intervals of
+ * now; this is exactly a token bucket, without storing a token count or a timestamp separately.
+ * Updates are a CAS on the slot, so unrelated keys never contend; keys that collide share a
+ * bucket, which only errs on the strict side.
+ */
+final class TokenBucketTable {
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final int capacity;
+    private final long intervalMicros;
+    private final long burstMicros;
+    private final long originNanos = System.nanoTime();
+
+    TokenBucketTable(int size, int capacity, double refillPerSecond) {
+        int slotCount = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+        this.slots = new AtomicLongArray(slotCount);
+        this.mask = slotCount - 1;
+        this.capacity = Math.max(1, capacity);
+        this.intervalMicros = Math.max(1, (long) (1_000_000 / refillPerSecond));
+        this.burstMicros = this.capacity * intervalMicros;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Take one token from the bucket at {@code hash}.
+     *
+     * @return tokens left after this request (&gt;= 0) if admitted, otherwise {@code -(micros
+     * until a token is available) - 1}
+     */
+    long tryAcquire(long hash) {
+        int index = (int) hash & mask;
+        long now = (System.nanoTime() - originNanos) / 1_000;
+        while (true) {
+            long full = slots.get(index);
+            long next = Math.max(full, now) + intervalMicros;
+            long ahead = next - now;
+            if (ahead > burstMicros) {
+                return -(ahead - burstMicros) - 1;
+            }
+            if (slots.compareAndSet(index, full, next)) {
+                return (burstMicros - ahead) / intervalMicros;
+            }
+        }
+    }
+
+    /** Seconds until the bucket at {@code hash} is full again. */
+    long secondsUntilFull(long hash) {
+        long now = (System.nanoTime() - originNanos) / 1_000;
+        long ahead = slots.get((int) hash & mask) - now;
+        return ahead <= 0 ? 0 : (ahead + 999_999) / 1_000_000;
+    }
+}
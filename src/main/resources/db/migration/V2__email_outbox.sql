@@ -0,0 +1,16 @@
+-- Transactional outbox for emails: rows are written in the same transaction as the user
+-- change that triggers them and delivered by MailOutboxRelay.
+CREATE TABLE email_outbox (
+    id              BIGSERIAL    PRIMARY KEY,
+    type            VARCHAR(32)  NOT NULL,
+    recipient       VARCHAR(255) NOT NULL,
+    payload         TEXT,
+    status          VARCHAR(16)  NOT NULL,
+    attempts        INTEGER      NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMPTZ  NOT NULL,
+    created_at      TIMESTAMPTZ  NOT NULL,
+    sent_at         TIMESTAMPTZ
+);
+
+-- Only pending rows are ever polled
+CREATE INDEX ix_email_outbox_due ON email_outbox (next_attempt_at, id) WHERE status = 'PENDING';
@@ -0,0 +1,2 @@
+-- Looked up when a newer email supersedes a pending one for the same recipient
+CREATE INDEX ix_email_outbox_pending_recipient ON email_outbox (recipient, type) WHERE status = 'PENDING';
@@ -0,0 +1,120 @@
+package com.sajilni.service.expiry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HierarchicalTimingWheelTest {
+    // 4 slots per level, 3 levels: level 0 spans 1 tick a slot, level 1 spans 4, level 2 spans 16
+    private static final int BITS = 2;
+    private static final int LEVELS = 3;
+    private static final int RANGE = 1 << (BITS * LEVELS);
+
+    private final HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(BITS, LEVELS, 0);
+    private final Map<ExpiryService.Timeout, Long> firedAt = new HashMap<>();
+
+    @Test
+    void firesEveryDeadlineOnItsExactTickAcrossAllLevels() {
+        List<ExpiryService.Timeout> timeouts = new ArrayList<>();
+        for (long deadline = 1; deadline < RANGE; deadline++) {
+            ExpiryService.Timeout timeout = timeout(deadline);
+            timeouts.add(timeout);
+            wheel.add(timeout, this::fired);
+        }
+
+        advanceTo(RANGE);
+
+        for (ExpiryService.Timeout timeout : timeouts) {
+            assertThat(firedAt).containsEntry(timeout, timeout.deadlineTick());
+        }
+    }
+
+    @Test
+    void cascadesDeadlinesThatAreNotAlignedToSlotBoundaries() {
+        advanceTo(5);
+        // From tick 5: 17 ticks lands on level 2, 6 on level 1, both off their slot boundaries
+        ExpiryService.Timeout far = timeout(22);
+        ExpiryService.Timeout near = timeout(11);
+        wheel.add(far, this::fired);
+        wheel.add(near, this::fired);
+
+        advanceTo(21);
+        assertThat(firedAt).containsEntry(near, 11L).doesNotContainKey(far);
+        advanceTo(22);
+        assertThat(firedAt).containsEntry(far, 22L);
+    }
+
+    @Test
+    void parksDeadlinesBeyondTheTopLevelUntilTheyComeIntoRange() {
+        ExpiryService.Timeout timeout = timeout(3L * RANGE + 7);
+        wheel.add(timeout, this::fired);
+
+        advanceTo(3L * RANGE + 6);
+        assertThat(firedAt).doesNotContainKey(timeout);
+        advanceTo(3L * RANGE + 7);
+        assertThat(firedAt).containsEntry(timeout, 3L * RANGE + 7);
+    }
+
+    @Test
+    void firesOverdueTimersOnAdd() {
+        advanceTo(10);
+        ExpiryService.Timeout timeout = timeout(4);
+        wheel.add(timeout, this::fired);
+
+        assertThat(firedAt).containsEntry(timeout, 10L);
+    }
+
+    @Test
+    void removedTimersNeverFire() {
+        ExpiryService.Timeout removed = timeout(40);
+        ExpiryService.Timeout kept = timeout(40);
+        wheel.add(removed, this::fired);
+        wheel.add(kept, this::fired);
+
+        assertThat(wheel.remove(removed)).isTrue();
+        assertThat(wheel.remove(removed)).isFalse();
+        advanceTo(RANGE);
+
+        assertThat(firedAt).containsOnlyKeys(kept);
+        assertThat(wheel.remove(kept)).isFalse();
+    }
+
+    @Test
+    void randomScheduleMatchesAReferenceModel() {
+        Random random = new Random(42);
+        Map<ExpiryService.Timeout, Long> expected = new HashMap<>();
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 5; i++) {
+                long deadline = wheel.currentTick() + random.nextInt(3 * RANGE) - 8;
+                ExpiryService.Timeout timeout = timeout(deadline);
+                expected.put(timeout, Math.max(deadline, wheel.currentTick()));
+                wheel.add(timeout, this::fired);
+            }
+            advanceTo(wheel.currentTick() + random.nextInt(20));
+        }
+        advanceTo(wheel.currentTick() + 4L * RANGE);
+
+        assertThat(firedAt).isEqualTo(expected);
+    }
+
+    private void advanceTo(long tick) {
+        while (wheel.currentTick() < tick) {
+            wheel.advance(this::fired);
+        }
+    }
+
+    private void fired(ExpiryService.Timeout timeout) {
+        assertThat(firedAt.put(timeout, wheel.currentTick())).as("fired twice").isNull();
+    }
+
+    private static ExpiryService.Timeout timeout(long deadlineTick) {
+        return new ExpiryService.Timeout(deadlineTick, () -> { }, new ConcurrentLinkedQueue<>());
+    }
+}
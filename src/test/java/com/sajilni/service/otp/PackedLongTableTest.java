@@ -0,0 +1,126 @@
+package com.sajilni.service.otp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackedLongTableTest {
+    private static final int VALUE = 1;
+
+    // Capacity 16 until the 12th insert, so keys equal mod 16 share a home slot
+    private final PackedLongTable table = new PackedLongTable(2, 16);
+
+    @Test
+    void removeShiftsTheRestOfTheClusterBack() {
+        put(1, 10);
+        put(17, 20);
+        put(33, 30);
+        put(2, 40); // home 2, displaced behind the 1/17/33 cluster
+        put(49, 50);
+
+        table.removeAt(table.indexOf(17));
+
+        assertThat(table.size()).isEqualTo(4);
+        assertThat(table.indexOf(17)).isNegative();
+        assertThat(value(1)).isEqualTo(10);
+        assertThat(value(33)).isEqualTo(30);
+        assertThat(value(2)).isEqualTo(40);
+        assertThat(value(49)).isEqualTo(50);
+        // Nothing is left stranded behind an empty slot: the cluster is contiguous again
+        assertThat(table.indexOf(33)).isEqualTo(2);
+    }
+
+    @Test
+    void removeShiftsAcrossTheWrapAround() {
+        put(15, 1);
+        put(31, 2); // wraps to slot 0
+        put(47, 3); // slot 1
+        put(16, 4); // home 0, displaced to slot 2
+
+        table.removeAt(table.indexOf(15));
+
+        assertThat(table.indexOf(31)).isEqualTo(15);
+        assertThat(value(47)).isEqualTo(3);
+        assertThat(value(16)).isEqualTo(4);
+        assertThat(table.size()).isEqualTo(3);
+    }
+
+    @Test
+    void randomInsertsAndRemovesMatchAMap() {
+        Random random = new Random(7);
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            long key = 1 + random.nextInt(500) * 64L; // clustered keys, many sharing home slots
+            if (random.nextBoolean()) {
+                put(key, i);
+                expected.put(key, (long) i);
+            } else {
+                int index = table.indexOf(key);
+                assertThat(index >= 0).isEqualTo(expected.containsKey(key));
+                if (index >= 0) {
+                    table.removeAt(index);
+                    expected.remove(key);
+                }
+            }
+        }
+
+        assertThat(table.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(value(key)).isEqualTo(value));
+    }
+
+    @Test
+    void evictSampledRemovesTheSmallestFieldAmongTheProbedRecords() {
+        put(1, 0xAB_0000_0030L);
+        put(17, 0xCD_0000_0010L); // smallest once the high bits are masked off
+        put(33, 0x01_0000_0020L); // smallest unmasked
+        put(8, 0x00_0000_0001L);  // outside the three samples probed from slot 1
+
+        assertThat(table.evictSampled(1, VALUE, 0xFFFF_FFFFL, 3)).isTrue();
+
+        assertThat(table.indexOf(17)).isNegative();
+        assertThat(table.indexOf(1)).isNotNegative();
+        assertThat(table.indexOf(33)).isNotNegative();
+        assertThat(table.indexOf(8)).isNotNegative();
+        assertThat(table.size()).isEqualTo(3);
+    }
+
+    @Test
+    void evictSampledSkipsEmptySlotsAndReportsAnEmptyTable() {
+        assertThat(table.evictSampled(5, VALUE, -1L, 4)).isFalse();
+
+        put(12, 7);
+        assertThat(table.evictSampled(5, VALUE, -1L, 4)).isTrue();
+        assertThat(table.size()).isZero();
+    }
+
+    @Test
+    void removeIfDropsEveryMatchInsideAndAcrossClusters() {
+        for (long key = 1; key <= 10; key++) {
+            // All home 15: one cluster from slot 15 wrapping over the front of the table. Slot 15
+            // itself is removed, so records already visited at the front are shifted back into it
+            put(key * 16 - 1, key + 1);
+        }
+
+        int removed = table.removeIf(VALUE, value -> value % 2 == 0);
+
+        assertThat(removed).isEqualTo(5);
+        assertThat(table.size()).isEqualTo(5);
+        for (long key = 1; key <= 10; key++) {
+            assertThat(table.indexOf(key * 16 - 1) >= 0).isEqualTo(key % 2 == 0);
+        }
+    }
+
+    private void put(long key, long value) {
+        table.set(table.insert(key), VALUE, value);
+    }
+
+    private long value(long key) {
+        int index = table.indexOf(key);
+        assertThat(index).as("index of %d", key).isNotNegative();
+        return table.get(index, VALUE);
+    }
+}
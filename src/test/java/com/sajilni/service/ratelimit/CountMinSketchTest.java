@@ -0,0 +1,92 @@
+package com.sajilni.service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountMinSketchTest {
+    // Row r uses column (low + r * high) & 15, so these hashes are laid out by hand:
+    // A is in column 1 of both rows, B shares A's column in row 0 only, C shares nothing
+    private static final long A = hash(0, 1);
+    private static final long B = hash(5, 1);
+    private static final long C = hash(0, 9);
+
+    private final CountMinSketch sketch = new CountMinSketch(2, 16);
+
+    @Test
+    void conservativeUpdateLeavesSharedCountersAlone() {
+        add(A, 3);
+
+        assertThat(sketch.add(B)).isEqualTo(1);
+
+        // A plain count-min sketch would have raised the shared counter to 4
+        assertThat(sketch.estimate(A)).isEqualTo(3);
+        assertThat(sketch.estimate(B)).isEqualTo(1);
+        assertThat(sketch.estimate(C)).isZero();
+    }
+
+    @Test
+    void sharedCounterOnlyRisesOnceTheCollidingKeyOvertakesIt() {
+        add(A, 3);
+        add(B, 4);
+
+        assertThat(sketch.estimate(B)).isEqualTo(4);
+        assertThat(sketch.estimate(A)).isEqualTo(3);
+    }
+
+    @Test
+    void neverUnderestimates() {
+        CountMinSketch wide = new CountMinSketch(4, 64);
+        Random random = new Random(3);
+        Map<Long, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            long key = random.nextInt(300) * 0x9E3779B97F4A7C15L;
+            wide.add(key);
+            counts.merge(key, 1, Integer::sum);
+        }
+
+        counts.forEach((key, count) -> assertThat(wide.estimate(key)).isGreaterThanOrEqualTo(count));
+    }
+
+    @Test
+    void decayHalvesEveryCounter() {
+        add(A, 5);
+        add(C, 8);
+
+        sketch.decay();
+
+        assertThat(sketch.estimate(A)).isEqualTo(2);
+        assertThat(sketch.estimate(C)).isEqualTo(4);
+        sketch.decay();
+        sketch.decay();
+        assertThat(sketch.estimate(A)).isZero();
+        assertThat(sketch.add(A)).isEqualTo(1);
+    }
+
+    @Test
+    void resetZeroesTheKeyAndOnlyUndercountsKeysSharingItsCounters() {
+        add(A, 3);
+        add(B, 1);
+        add(C, 2);
+
+        sketch.reset(A);
+
+        assertThat(sketch.estimate(A)).isZero();
+        assertThat(sketch.estimate(B)).isBetween(0, 1);
+        assertThat(sketch.estimate(C)).isEqualTo(2);
+    }
+
+    private void add(long hash, int times) {
+        for (int i = 0; i < times; i++) {
+            sketch.add(hash);
+        }
+    }
+
+    private static long hash(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFF_FFFFL);
+    }
+}
@@ -0,0 +1,154 @@
+package com.sajilni.service.ratelimit;
+
+import com.sajilni.service.expiry.ExpiryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GcraRateLimiterTest {
+    // The default login policy: 5 failures an hour, then 15 minutes locked out
+    private static final RateLimitPolicy LOGIN = new RateLimitPolicy("login", 5, Duration.ofHours(1), Duration.ofMinutes(15));
+
+    private AnnotationConfigApplicationContext context;
+    private ExpiryService expiryService;
+
+    @BeforeEach
+    void startWheel() {
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(ExpiryService.class, () -> new ExpiryService(new SimpleMeterRegistry(), Duration.ofMillis(10)));
+        context.refresh();
+        expiryService = context.getBean(ExpiryService.class);
+    }
+
+    @AfterEach
+    void stopWheel() {
+        context.close();
+    }
+
+    @Test
+    void locksOutOnTheFifthFailure() {
+        GcraRateLimiter limiter = limiter(LOGIN, 1_000);
+
+        for (int failure = 1; failure <= 4; failure++) {
+            assertThat(limiter.record("user@example.com")).as("failure %d", failure).isFalse();
+            assertThat(limiter.isLimited("user@example.com")).isFalse();
+        }
+        assertThat(limiter.record("user@example.com")).isTrue();
+        assertThat(limiter.isLimited("user@example.com")).isTrue();
+        assertThat(limiter.record("user@example.com")).isTrue();
+
+        assertThat(limiter.isLimited("other@example.com")).isFalse();
+    }
+
+    @Test
+    void resetStartsTheKeyOver() {
+        GcraRateLimiter limiter = limiter(LOGIN, 1_000);
+        recordTimes(limiter, "user@example.com", 5);
+
+        limiter.reset("user@example.com");
+
+        assertThat(limiter.isLimited("user@example.com")).isFalse();
+        recordTimes(limiter, "user@example.com", 4);
+        assertThat(limiter.isLimited("user@example.com")).isFalse();
+        assertThat(limiter.record("user@example.com")).isTrue();
+    }
+
+    @Test
+    void expiredKeysAreDroppedAndStartFresh() throws InterruptedException {
+        GcraRateLimiter limiter = limiter(new RateLimitPolicy("burst", 2, Duration.ofSeconds(2), Duration.ZERO), 1_000);
+        assertThat(limiter.record("key")).isFalse();
+        assertThat(limiter.record("key")).isTrue();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (limiter.size() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertThat(limiter.size()).isZero();
+        assertThat(limiter.record("key")).isFalse();
+        assertThat(expiryService.getBacklog()).isEqualTo(1);
+    }
+
+    /**
+     * Writers race a thread that keeps killing the key's holder. A writer that picked up a
+     * holder just before it was marked {@code DEAD} must retry on a fresh one rather than spin or
+     * count into the dead holder; afterwards the key must behave like a new one.
+     */
+    @Test
+    void writersRacingResetNeverStickToADeadHolder() throws Exception {
+        GcraRateLimiter limiter = limiter(LOGIN, 1_000);
+        int writers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(writers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    while (running.get()) {
+                        limiter.record("user@example.com");
+                    }
+                    return null;
+                }));
+            }
+            started.await();
+            for (int i = 0; i < 20_000; i++) {
+                limiter.reset("user@example.com");
+            }
+            running.set(false);
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        limiter.reset("user@example.com");
+        assertThat(limiter.size()).isZero();
+        recordTimes(limiter, "user@example.com", 4);
+        assertThat(limiter.isLimited("user@example.com")).isFalse();
+        assertThat(limiter.record("user@example.com")).isTrue();
+    }
+
+    @Test
+    void evictedKeysDoNotKeepTheirTimers() throws InterruptedException {
+        GcraRateLimiter limiter = limiter(LOGIN, 100);
+        for (int i = 0; i < 10_000; i++) {
+            limiter.record("user" + i + "@example.com");
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (expiryService.getBacklog() > limiter.size() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertThat(expiryService.getBacklog()).isLessThanOrEqualTo(limiter.size());
+    }
+
+    private GcraRateLimiter limiter(RateLimitPolicy policy, long maximumSize) {
+        return new GcraRateLimiter(policy, expiryService, maximumSize,
+                Counter.builder("evicted").register(new SimpleMeterRegistry()));
+    }
+
+    private static void recordTimes(GcraRateLimiter limiter, String key, int times) {
+        for (int i = 0; i < times; i++) {
+            limiter.record(key);
+        }
+    }
+}